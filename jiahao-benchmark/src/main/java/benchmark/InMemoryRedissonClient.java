@@ -0,0 +1,99 @@
+package benchmark;
+
+import Lock.MyLockFactory;
+import Lock.MyLockType;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+/**
+ * <big>内存版的RedissonClient</big>
+ * <p>只实现锁相关的方法，可重入锁、公平锁、读写锁分别映射到JVM内对应类型的锁，
+ * 用于在没有Redis的情况下测量切面本身的开销；其余方法一律抛出UnsupportedOperationException</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+public final class InMemoryRedissonClient {
+    private InMemoryRedissonClient() {
+    }
+
+    /**
+     * 创建内存版的RedissonClient
+     *
+     * @return RedissonClient代理
+     */
+    public static RedissonClient create() {
+        MyLockFactory localFactory = new MyLockFactory(provider(null));
+        String id = UUID.randomUUID().toString();
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getLock":
+                    return localFactory.getLock(MyLockType.LOCAL_RE_ENTRANT_LOCK, (String) args[0]);
+                case "getFairLock":
+                    return localFactory.getLock(MyLockType.LOCAL_FAIR_LOCK, (String) args[0]);
+                case "getReadWriteLock":
+                    return readWriteLock(localFactory, (String) args[0]);
+                case "getId":
+                    return id;
+                case "isShutdown":
+                case "isShuttingDown":
+                    return false;
+                case "shutdown":
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "InMemoryRedissonClient@" + id;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (RedissonClient) Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                new Class<?>[]{RedissonClient.class}, handler);
+    }
+
+    /**
+     * 把客户端包装成ObjectProvider，传入null时表示没有客户端
+     *
+     * @param redissonClient Redisson客户端
+     * @return ObjectProvider
+     */
+    public static ObjectProvider<RedissonClient> provider(RedissonClient redissonClient) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (redissonClient != null) {
+            beanFactory.addBean("redissonClient", redissonClient);
+        }
+        return beanFactory.getBeanProvider(RedissonClient.class);
+    }
+
+    private static RReadWriteLock readWriteLock(MyLockFactory localFactory, String name) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "readLock":
+                    return localFactory.getLock(MyLockType.LOCAL_READ_LOCK, name);
+                case "writeLock":
+                    return localFactory.getLock(MyLockType.LOCAL_WRITE_LOCK, name);
+                case "getName":
+                    return name;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "InMemoryReadWriteLock@" + name;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (RReadWriteLock) Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                new Class<?>[]{RReadWriteLock.class}, handler);
+    }
+}
@@ -0,0 +1,95 @@
+package benchmark;
+
+import Lock.MyLock;
+import Lock.MyLockStrategy;
+import Lock.MyLockType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * <big>基准测试的被测服务</big>
+ * <p>方法体几乎为空，测出的耗时基本都是切面本身的开销：锁名称解析、方法解析、加解锁以及指标记录</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+public class LockedService {
+
+    /**
+     * 不加锁的方法，作为代理本身开销的基准
+     */
+    public long plain(long id) {
+        return id;
+    }
+
+    // ---------------- 锁名称模板 ----------------
+
+    @MyLock(name = "bench:constant", lockStrategy = MyLockStrategy.KEEP_TRYING)
+    public long constantName(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:#{id}")
+    public long simpleTemplate(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:#{user.tenant}:#{user.id}:#{T(java.lang.Math).floorMod(#user.id, 16)}")
+    public long complexTemplate(User user) {
+        return user.getId();
+    }
+
+    // ---------------- 锁类型 ----------------
+
+    @MyLock(name = "bench:fair:#{id}", lockType = MyLockType.FAIR_LOCK)
+    public long fairLock(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:rw:#{id}", lockType = MyLockType.READ_LOCK)
+    public long readLock(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:rw:#{id}", lockType = MyLockType.WRITE_LOCK)
+    public long writeLock(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:local:#{id}", lockType = MyLockType.LOCAL_RE_ENTRANT_LOCK)
+    public long localLock(long id) {
+        return id;
+    }
+
+    // ---------------- 锁策略 ----------------
+
+    @MyLock(name = "bench:skip:#{id}", lockStrategy = MyLockStrategy.SKIP_FAST)
+    public long skipFast(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:keep:#{id}", lockStrategy = MyLockStrategy.KEEP_TRYING)
+    public long keepTrying(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:backoff:#{id}", lockStrategy = MyLockStrategy.SKIP_AFTER_BACKOFF_TIMEOUT)
+    public long backoff(long id) {
+        return id;
+    }
+
+    @MyLock(name = "bench:local-first:#{id}", localFirst = true)
+    public long localFirst(long id) {
+        return id;
+    }
+
+    /**
+     * 复杂模板用到的参数
+     */
+    @Data
+    @AllArgsConstructor
+    public static class User {
+        private String tenant;
+        private long id;
+    }
+}
@@ -0,0 +1,183 @@
+package benchmark;
+
+import Lock.DefaultMyLockMetrics;
+import Lock.MyLockAspect;
+import Lock.MyLockFactory;
+import Lock.MyLockLeaseManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redisson.api.RedissonClient;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <big>MyLockAspect的单次调用开销</big>
+ * <p>Redis换成{@link InMemoryRedissonClient}，测出的是切面本身的耗时。每个线程使用自己的锁名称，不存在锁竞争，
+ * 只有constantName所有线程共用一个锁名称，用于观察热点key下的表现。</p>
+ * <p>运行方式：mvn -Pbenchmark -pl jiahao-benchmark -am package，然后 java -jar jiahao-benchmark/target/benchmarks.jar [线程数...]，
+ * 默认依次使用1、4、16、64个线程，结果以JSON格式写入当前目录</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MyLockAspectBenchmark {
+    /**
+     * 默认的线程数
+     */
+    private static final int[] DEFAULT_THREADS = {1, 4, 16, 64};
+
+    /**
+     * 所有线程共享的被测对象
+     */
+    @State(Scope.Benchmark)
+    public static class Target {
+        private LockedService service;
+        private LockedService proxy;
+        private MyLockLeaseManager leaseManager;
+
+        @Setup
+        public void setup() {
+            ObjectProvider<RedissonClient> provider = InMemoryRedissonClient.provider(InMemoryRedissonClient.create());
+            leaseManager = new MyLockLeaseManager(provider);
+            MyLockAspect aspect = new MyLockAspect(new MyLockFactory(provider), new DefaultMyLockMetrics(), leaseManager);
+            service = new LockedService();
+            AspectJProxyFactory proxyFactory = new AspectJProxyFactory(service);
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAspect(aspect);
+            proxy = proxyFactory.getProxy();
+        }
+
+        @TearDown
+        public void tearDown() {
+            leaseManager.destroy();
+        }
+    }
+
+    /**
+     * 每个线程自己的锁名称参数
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+        private static final AtomicLong ID_GENERATOR = new AtomicLong();
+
+        private long id;
+        private LockedService.User user;
+
+        @Setup
+        public void setup() {
+            id = ID_GENERATOR.incrementAndGet();
+            user = new LockedService.User("tenant-" + (id % 4), id);
+        }
+    }
+
+    @Benchmark
+    public long direct(Target target, Caller caller) {
+        return target.service.plain(caller.id);
+    }
+
+    @Benchmark
+    public long proxyOnly(Target target, Caller caller) {
+        return target.proxy.plain(caller.id);
+    }
+
+    @Benchmark
+    public long constantName(Target target, Caller caller) {
+        return target.proxy.constantName(caller.id);
+    }
+
+    @Benchmark
+    public long simpleTemplate(Target target, Caller caller) {
+        return target.proxy.simpleTemplate(caller.id);
+    }
+
+    @Benchmark
+    public long complexTemplate(Target target, Caller caller) {
+        return target.proxy.complexTemplate(caller.user);
+    }
+
+    @Benchmark
+    public long fairLock(Target target, Caller caller) {
+        return target.proxy.fairLock(caller.id);
+    }
+
+    @Benchmark
+    public long readLock(Target target, Caller caller) {
+        return target.proxy.readLock(caller.id);
+    }
+
+    @Benchmark
+    public long writeLock(Target target, Caller caller) {
+        return target.proxy.writeLock(caller.id);
+    }
+
+    @Benchmark
+    public long localLock(Target target, Caller caller) {
+        return target.proxy.localLock(caller.id);
+    }
+
+    @Benchmark
+    public long skipFast(Target target, Caller caller) {
+        return target.proxy.skipFast(caller.id);
+    }
+
+    @Benchmark
+    public long keepTrying(Target target, Caller caller) {
+        return target.proxy.keepTrying(caller.id);
+    }
+
+    @Benchmark
+    public long backoff(Target target, Caller caller) {
+        return target.proxy.backoff(caller.id);
+    }
+
+    @Benchmark
+    public long localFirst(Target target, Caller caller) {
+        return target.proxy.localFirst(caller.id);
+    }
+
+    /**
+     * 按线程数依次运行全部基准测试
+     *
+     * @param args 线程数，不传时使用1、4、16、64
+     */
+    public static void main(String[] args) throws RunnerException {
+        int[] threads = DEFAULT_THREADS;
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threads[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int thread : threads) {
+            Options options = new OptionsBuilder()
+                    .include(MyLockAspectBenchmark.class.getSimpleName())
+                    .threads(thread)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("my-lock-aspect-" + thread + "-threads.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import scheduled.util.ResizableBlockingQueue;
+import scheduled.util.ResizeLinkedBlockingQueue;
+import scheduled.util.SegmentedArrayBlockingQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>线程池队列的吞吐</big>
+ * <p>8个生产者和2个消费者同时操作一个队列，对比双锁链表队列和分段数组无锁队列，队列满或空时不阻塞，
+ * 测出的是放入和取出本身的开销。</p>
+ * <p>运行方式：mvn -Pbenchmark -pl jiahao-benchmark -am package，然后
+ * java -cp jiahao-benchmark/target/benchmarks.jar benchmark.ResizableQueueBenchmark</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ResizableQueueBenchmark {
+    private static final Runnable TASK = () -> {
+    };
+
+    @Param({"Linked", "SegmentedArray"})
+    private String queueType;
+
+    private ResizableBlockingQueue<Runnable> queue;
+
+    @Setup
+    public void setUp() {
+        queue = "Linked".equals(queueType) ? new ResizeLinkedBlockingQueue<>(500) : new SegmentedArrayBlockingQueue<>(500);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(8)
+    public boolean offer() {
+        return queue.offer(TASK);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(2)
+    public Runnable poll() {
+        return queue.poll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResizableQueueBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("queue-benchmark.json")
+                .build()).run();
+    }
+}
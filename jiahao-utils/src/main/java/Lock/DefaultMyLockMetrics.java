@@ -0,0 +1,181 @@
+package Lock;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <big>默认的锁指标收集</big>
+ * <p>按加锁的方法统计加锁次数、等待耗时和持有耗时（同一个锁名称模板用在多个方法上时分开统计），
+ * 并用有界的热点统计找出最热的锁名称</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@Component
+public class DefaultMyLockMetrics implements MyLockMetrics {
+    /**
+     * 热点统计保留的计数器个数
+     */
+    private static final int HOT_KEY_CAPACITY = 256;
+    /**
+     * 快照中返回的热点个数
+     */
+    private static final int HOT_KEY_TOP = 20;
+
+    /**
+     * 按方法统计的指标
+     */
+    private final Map<Method, TemplateCounter> counters = new ConcurrentHashMap<>(64);
+    /**
+     * 新增方法指标时的回调
+     */
+    private final List<Consumer<TemplateCounter>> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * 热点锁名称统计
+     */
+    private final MyLockHotKeySketch hotKeySketch = new MyLockHotKeySketch(HOT_KEY_CAPACITY);
+
+    @Override
+    public void recordAcquired(Method method, MyLock myLock, List<String> lockNames, long waitNanos) {
+        TemplateCounter counter = counter(method, myLock);
+        counter.acquired.increment();
+        counter.wait.record(waitNanos);
+        offerHotKeys(lockNames);
+    }
+
+    @Override
+    public void recordSkipped(Method method, MyLock myLock, List<String> lockNames, long waitNanos) {
+        TemplateCounter counter = counter(method, myLock);
+        counter.skipped.increment();
+        counter.wait.record(waitNanos);
+        offerHotKeys(lockNames);
+    }
+
+    @Override
+    public void recordFailed(Method method, MyLock myLock, List<String> lockNames, long waitNanos) {
+        TemplateCounter counter = counter(method, myLock);
+        counter.failed.increment();
+        counter.wait.record(waitNanos);
+        offerHotKeys(lockNames);
+    }
+
+    @Override
+    public void recordHeld(Method method, MyLock myLock, long holdNanos) {
+        counter(method, myLock).hold.record(holdNanos);
+    }
+
+    @Override
+    public MyLockStats snapshot() {
+        List<MyLockStats.TemplateStats> templates = new ArrayList<>(counters.size());
+        for (TemplateCounter counter : counters.values()) {
+            MyLockStats.TemplateStats stats = new MyLockStats.TemplateStats();
+            stats.setMethod(counter.method);
+            stats.setName(counter.name);
+            stats.setLockType(counter.lockType);
+            stats.setLockStrategy(counter.lockStrategy);
+            stats.setAcquiredCount(counter.acquired.sum());
+            stats.setSkippedCount(counter.skipped.sum());
+            stats.setFailedCount(counter.failed.sum());
+            stats.setWaitTotalMillis(toMillis(counter.wait.total.sum()));
+            stats.setWaitMeanMillis(counter.wait.meanMillis());
+            stats.setWaitMaxMillis(toMillis(counter.wait.max.get()));
+            stats.setHoldTotalMillis(toMillis(counter.hold.total.sum()));
+            stats.setHoldMeanMillis(counter.hold.meanMillis());
+            stats.setHoldMaxMillis(toMillis(counter.hold.max.get()));
+            templates.add(stats);
+        }
+        return new MyLockStats(templates, hotKeySketch.top(HOT_KEY_TOP));
+    }
+
+    /**
+     * 注册新增方法指标的回调，已有的方法指标立即回调一次
+     *
+     * @param listener 回调，参数为新增的方法指标
+     */
+    void addListener(Consumer<TemplateCounter> listener) {
+        listeners.add(listener);
+        counters.values().forEach(listener);
+    }
+
+    private TemplateCounter counter(Method method, MyLock myLock) {
+        TemplateCounter counter = counters.get(method);
+        if (counter != null) {
+            return counter;
+        }
+        TemplateCounter created = new TemplateCounter(method, myLock);
+        TemplateCounter previous = counters.putIfAbsent(method, created);
+        if (previous != null) {
+            return previous;
+        }
+        listeners.forEach(listener -> listener.accept(created));
+        return created;
+    }
+
+    private void offerHotKeys(List<String> lockNames) {
+        for (String lockName : lockNames) {
+            hotKeySketch.offer(lockName);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 单个方法的计数器
+     */
+    static final class TemplateCounter {
+        // 类名.方法名
+        final String method;
+        // 锁名称模板
+        final String name;
+        final MyLockType lockType;
+        final MyLockStrategy lockStrategy;
+        final LongAdder acquired = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final Timer wait = new Timer();
+        final Timer hold = new Timer();
+
+        private TemplateCounter(Method method, MyLock myLock) {
+            this.method = ClassUtils.getQualifiedMethodName(method);
+            this.name = myLock.name();
+            this.lockType = myLock.lockType();
+            this.lockStrategy = myLock.lockStrategy();
+        }
+    }
+
+    /**
+     * 简单计时器，记录次数、总耗时和最大耗时
+     */
+    static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+
+        private void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            long current;
+            while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+                // 并发更新最大值，失败则重试
+            }
+        }
+
+        private double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : toMillis(total.sum()) / n;
+        }
+    }
+}
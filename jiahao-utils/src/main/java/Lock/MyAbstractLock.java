@@ -0,0 +1,258 @@
+package Lock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLock;
+import org.redisson.misc.RedissonPromise;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * <big>非Redisson锁的RLock适配基类</big>
+ * <p>子类只需要实现按持有者加锁、解锁以及状态查询，其余的同步、异步方法都由本类转换，
+ * 这样本地锁等实现也可以直接交给{@link MyLockStrategy}和{@link MyLockAspect}使用</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+public abstract class MyAbstractLock implements RLock {
+    /**
+     * 异步加锁的线程数，等待中的加锁会占用线程，超过后排队
+     */
+    private static final int ASYNC_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * 异步加锁的排队上限，队列满时加锁直接失败
+     */
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
+    /**
+     * 需要等待的异步加锁在这个线程池中执行，线程数和队列都有上限，空闲线程自动回收
+     */
+    private static final ThreadPoolExecutor ASYNC_EXECUTOR = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(ASYNC_QUEUE_CAPACITY),
+            new ThreadFactoryBuilder().setNameFormat("my-lock-async-%d").setDaemon(true).build());
+
+    static {
+        ASYNC_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 按持有者尝试加锁
+     *
+     * @param waitTime 最大等待时间，小于0表示一直等待
+     * @param leaseTime 租约时间，小于等于0表示不过期
+     * @param unit 时间单位
+     * @param threadId 持有者标识
+     * @return 是否加锁成功
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    protected abstract boolean tryAcquire(long waitTime, long leaseTime, TimeUnit unit, long threadId) throws InterruptedException;
+
+    /**
+     * 按持有者解锁
+     *
+     * @param threadId 持有者标识
+     * @throws IllegalMonitorStateException 锁不被该持有者持有
+     */
+    protected abstract void release(long threadId);
+
+    @Override
+    public void lock() {
+        lock(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lock(long leaseTime, TimeUnit unit) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                tryAcquire(-1, leaseTime, unit, currentThreadId());
+                break;
+            } catch (InterruptedException e) {
+                // 与Redisson一致，lock不响应中断，加锁成功后再恢复中断标记
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        lockInterruptibly(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lockInterruptibly(long leaseTime, TimeUnit unit) throws InterruptedException {
+        tryAcquire(-1, leaseTime, unit, currentThreadId());
+    }
+
+    @Override
+    public boolean tryLock() {
+        try {
+            return tryAcquire(0, -1, TimeUnit.MILLISECONDS, currentThreadId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(time, -1, unit, currentThreadId());
+    }
+
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(waitTime, leaseTime, unit, currentThreadId());
+    }
+
+    @Override
+    public void unlock() {
+        release(currentThreadId());
+    }
+
+    @Override
+    public Condition newCondition() {
+        // 与Redisson一致，不支持条件变量
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isHeldByCurrentThread() {
+        return isHeldByThread(currentThreadId());
+    }
+
+    @Override
+    public RFuture<Boolean> forceUnlockAsync() {
+        return completed(this::forceUnlock);
+    }
+
+    @Override
+    public RFuture<Void> unlockAsync() {
+        return unlockAsync(currentThreadId());
+    }
+
+    @Override
+    public RFuture<Void> unlockAsync(long threadId) {
+        return completed(() -> {
+            release(threadId);
+            return null;
+        });
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync() {
+        return tryLockAsync(currentThreadId());
+    }
+
+    @Override
+    public RFuture<Void> lockAsync() {
+        return lockAsync(currentThreadId());
+    }
+
+    @Override
+    public RFuture<Void> lockAsync(long threadId) {
+        return lockAsync(-1, TimeUnit.MILLISECONDS, threadId);
+    }
+
+    @Override
+    public RFuture<Void> lockAsync(long leaseTime, TimeUnit unit) {
+        return lockAsync(leaseTime, unit, currentThreadId());
+    }
+
+    @Override
+    public RFuture<Void> lockAsync(long leaseTime, TimeUnit unit, long threadId) {
+        return async(() -> {
+            tryAcquire(-1, leaseTime, unit, threadId);
+            return null;
+        });
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long threadId) {
+        return tryLockAsync(0, -1, TimeUnit.MILLISECONDS, threadId);
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long waitTime, TimeUnit unit) {
+        return tryLockAsync(waitTime, -1, unit);
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit) {
+        return tryLockAsync(waitTime, leaseTime, unit, currentThreadId());
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long threadId) {
+        // 不需要等待的加锁直接在当前线程完成
+        if (waitTime == 0) {
+            return completed(() -> tryAcquire(0, leaseTime, unit, threadId));
+        }
+        long waitNanos = unit.toNanos(waitTime);
+        if (waitNanos < 0 || waitNanos == Long.MAX_VALUE) {
+            return async(() -> tryAcquire(waitTime, leaseTime, unit, threadId));
+        }
+        // 等待时间从提交时开始计算，在线程池中排队的时间也算在内
+        long deadline = System.nanoTime() + waitNanos;
+        long leaseNanos = leaseTime > 0 ? unit.toNanos(leaseTime) : leaseTime;
+        return async(() -> tryAcquire(Math.max(0, deadline - System.nanoTime()), leaseNanos, TimeUnit.NANOSECONDS, threadId));
+    }
+
+    @Override
+    public RFuture<Integer> getHoldCountAsync() {
+        return completed(this::getHoldCount);
+    }
+
+    @Override
+    public RFuture<Boolean> isLockedAsync() {
+        return completed(this::isLocked);
+    }
+
+    @Override
+    public RFuture<Long> remainingTimeToLiveAsync() {
+        return completed(this::remainingTimeToLive);
+    }
+
+    protected static long currentThreadId() {
+        return Thread.currentThread().getId();
+    }
+
+    /**
+     * 在当前线程执行并返回已完成的future
+     */
+    protected static <T> RFuture<T> completed(Callable<T> action) {
+        RedissonPromise<T> promise = new RedissonPromise<>();
+        try {
+            promise.trySuccess(action.call());
+        } catch (Exception e) {
+            promise.tryFailure(e);
+        }
+        return promise;
+    }
+
+    /**
+     * 在异步线程池执行可能需要等待的操作，线程池排队已满时返回失败的future
+     */
+    protected static <T> RFuture<T> async(Callable<T> action) {
+        RedissonPromise<T> promise = new RedissonPromise<>();
+        try {
+            ASYNC_EXECUTOR.execute(() -> {
+                try {
+                    promise.trySuccess(action.call());
+                } catch (Exception e) {
+                    promise.tryFailure(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promise.tryFailure(e);
+        }
+        return promise;
+    }
+}
@@ -0,0 +1,63 @@
+package Lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>JVM内的锁</big>
+ * <p>{@link MyLocalLockTable}中某个锁名称的一个视图，按可重入锁、公平锁、读锁、写锁的方式加锁，
+ * 用于单机部署或者测试时代替Redisson的锁，不需要任何网络请求</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLocalLock extends MyAbstractLock {
+    private final MyLocalLockTable.LockState state;
+    private final MyLocalLockTable.Mode mode;
+    private final boolean fair;
+
+    MyLocalLock(MyLocalLockTable.LockState state, MyLocalLockTable.Mode mode, boolean fair) {
+        this.state = state;
+        this.mode = mode;
+        this.fair = fair;
+    }
+
+    @Override
+    protected boolean tryAcquire(long waitTime, long leaseTime, TimeUnit unit, long threadId) throws InterruptedException {
+        return state.acquire(mode, fair, waitTime, leaseTime, unit, threadId);
+    }
+
+    @Override
+    protected void release(long threadId) {
+        state.release(mode, threadId);
+    }
+
+    @Override
+    public String getName() {
+        return state.getName();
+    }
+
+    @Override
+    public boolean forceUnlock() {
+        return state.forceRelease(mode);
+    }
+
+    @Override
+    public boolean isLocked() {
+        return state.isLockedBy(mode);
+    }
+
+    @Override
+    public boolean isHeldByThread(long threadId) {
+        return state.getHoldCount(mode, threadId) > 0;
+    }
+
+    @Override
+    public int getHoldCount() {
+        return state.getHoldCount(mode, currentThreadId());
+    }
+
+    @Override
+    public long remainingTimeToLive() {
+        return state.remainingTimeToLive(mode);
+    }
+}
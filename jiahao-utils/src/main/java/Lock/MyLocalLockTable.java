@@ -0,0 +1,348 @@
+package Lock;
+
+import com.google.common.collect.MapMaker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <big>JVM内的锁表</big>
+ * <p>按锁名称保存锁状态，内部分段，空闲的锁状态只被弱引用持有，没人使用时自动回收；
+ * 被持有的锁状态会额外强引用，保证持有期间不会因为GC丢失。语义与Redisson的锁一致：可重入、可选公平、读写锁以及租约过期</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLocalLockTable {
+    /**
+     * 锁状态，值为弱引用
+     */
+    private final ConcurrentMap<String, LockState> states;
+    /**
+     * 被持有的锁状态
+     */
+    private final Map<String, LockState> heldStates = new ConcurrentHashMap<>(64);
+
+    MyLocalLockTable(int concurrencyLevel) {
+        this.states = new MapMaker().concurrencyLevel(concurrencyLevel).weakValues().makeMap();
+    }
+
+    /**
+     * 获取锁名称对应的锁状态，不存在则创建
+     *
+     * @param name 锁名称
+     * @return 锁状态
+     */
+    LockState getState(String name) {
+        LockState state = states.get(name);
+        if (state != null) {
+            return state;
+        }
+        LockState created = new LockState(this, name);
+        LockState previous = states.putIfAbsent(name, created);
+        return previous != null ? previous : created;
+    }
+
+    /**
+     * 锁的持有方式
+     */
+    enum Mode {
+        // 互斥（可重入锁、公平锁、写锁）
+        EXCLUSIVE,
+        // 共享（读锁）
+        SHARED
+    }
+
+    /**
+     * 单个锁名称的状态，所有字段都由guard保护
+     */
+    static final class LockState {
+        /**
+         * 不过期
+         */
+        private static final long NO_EXPIRE = Long.MIN_VALUE;
+
+        private final MyLocalLockTable table;
+        private final String name;
+        private final ReentrantLock guard = new ReentrantLock();
+        private final Condition changed = guard.newCondition();
+        /**
+         * 互斥持有者、重入次数、过期时间
+         */
+        private long writeOwner;
+        private int writeHolds;
+        private long writeExpireAt = NO_EXPIRE;
+        /**
+         * 共享持有者，值为 [重入次数, 过期时间]
+         */
+        private final Map<Long, long[]> readHolds = new HashMap<>(4);
+        /**
+         * 公平锁的排队队列
+         */
+        private final Deque<Object> fairQueue = new ArrayDeque<>();
+
+        private LockState(MyLocalLockTable table, String name) {
+            this.table = table;
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * 加锁
+         *
+         * @param mode 持有方式
+         * @param fair 是否按排队顺序获取
+         * @param waitTime 最大等待时间，小于0表示一直等待
+         * @param leaseTime 租约时间，小于等于0表示不过期
+         * @param unit 时间单位
+         * @param threadId 持有者标识
+         * @return 是否加锁成功
+         * @throws InterruptedException 等待过程中线程被中断
+         */
+        boolean acquire(Mode mode, boolean fair, long waitTime, long leaseTime, TimeUnit unit, long threadId)
+                throws InterruptedException {
+            boolean forever = waitTime < 0 || unit.toNanos(waitTime) == Long.MAX_VALUE;
+            long leaseNanos = leaseTime > 0 ? unit.toNanos(leaseTime) : 0;
+            long deadline = forever ? 0 : System.nanoTime() + unit.toNanos(waitTime);
+            guard.lockInterruptibly();
+            Object ticket = null;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    purgeExpired(now);
+                    if (canAcquire(mode, fair, ticket, threadId)) {
+                        doAcquire(mode, leaseNanos, now, threadId);
+                        return true;
+                    }
+                    long remaining = forever ? Long.MAX_VALUE : deadline - now;
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    if (fair && ticket == null) {
+                        ticket = new Object();
+                        fairQueue.addLast(ticket);
+                    }
+                    // 最多等到最早的租约过期，过期后重新检查
+                    long untilExpire = nextExpireAt();
+                    if (untilExpire != NO_EXPIRE) {
+                        remaining = Math.min(remaining, Math.max(untilExpire - now, 1));
+                    }
+                    changed.awaitNanos(remaining);
+                }
+            } finally {
+                if (ticket != null) {
+                    fairQueue.remove(ticket);
+                    changed.signalAll();
+                }
+                guard.unlock();
+            }
+        }
+
+        /**
+         * 解锁
+         *
+         * @param mode 持有方式
+         * @param threadId 持有者标识
+         */
+        void release(Mode mode, long threadId) {
+            guard.lock();
+            try {
+                purgeExpired(System.nanoTime());
+                if (mode == Mode.EXCLUSIVE) {
+                    if (writeHolds == 0 || writeOwner != threadId) {
+                        throw notHeld(threadId);
+                    }
+                    writeHolds--;
+                } else {
+                    long[] hold = readHolds.get(threadId);
+                    if (hold == null) {
+                        throw notHeld(threadId);
+                    }
+                    if (--hold[0] == 0) {
+                        readHolds.remove(threadId);
+                    }
+                }
+                afterRelease();
+            } finally {
+                guard.unlock();
+            }
+        }
+
+        /**
+         * 强制解锁，不管持有者是谁
+         *
+         * @param mode 持有方式
+         * @return 解锁前是否被持有
+         */
+        boolean forceRelease(Mode mode) {
+            guard.lock();
+            try {
+                purgeExpired(System.nanoTime());
+                boolean locked = isLocked(mode);
+                if (mode == Mode.EXCLUSIVE) {
+                    writeHolds = 0;
+                } else {
+                    readHolds.clear();
+                }
+                afterRelease();
+                return locked;
+            } finally {
+                guard.unlock();
+            }
+        }
+
+        boolean isLockedBy(Mode mode) {
+            guard.lock();
+            try {
+                purgeExpired(System.nanoTime());
+                return isLocked(mode);
+            } finally {
+                guard.unlock();
+            }
+        }
+
+        int getHoldCount(Mode mode, long threadId) {
+            guard.lock();
+            try {
+                purgeExpired(System.nanoTime());
+                if (mode == Mode.EXCLUSIVE) {
+                    return writeHolds > 0 && writeOwner == threadId ? writeHolds : 0;
+                }
+                long[] hold = readHolds.get(threadId);
+                return hold == null ? 0 : (int) hold[0];
+            } finally {
+                guard.unlock();
+            }
+        }
+
+        /**
+         * 剩余存活时间，与Redis的pttl一致：-2表示未加锁，-1表示不过期
+         *
+         * @param mode 持有方式
+         * @return 剩余存活时间（毫秒）
+         */
+        long remainingTimeToLive(Mode mode) {
+            guard.lock();
+            try {
+                long now = System.nanoTime();
+                purgeExpired(now);
+                if (!isLocked(mode)) {
+                    return -2;
+                }
+                long expireAt = NO_EXPIRE;
+                if (mode == Mode.EXCLUSIVE) {
+                    expireAt = writeExpireAt;
+                } else {
+                    for (long[] hold : readHolds.values()) {
+                        if (hold[1] == NO_EXPIRE) {
+                            return -1;
+                        }
+                        expireAt = expireAt == NO_EXPIRE || hold[1] - expireAt > 0 ? hold[1] : expireAt;
+                    }
+                }
+                return expireAt == NO_EXPIRE ? -1 : TimeUnit.NANOSECONDS.toMillis(expireAt - now);
+            } finally {
+                guard.unlock();
+            }
+        }
+
+        private boolean isLocked(Mode mode) {
+            return mode == Mode.EXCLUSIVE ? writeHolds > 0 : !readHolds.isEmpty();
+        }
+
+        private boolean isIdle() {
+            return writeHolds == 0 && readHolds.isEmpty();
+        }
+
+        private boolean canAcquire(Mode mode, boolean fair, Object ticket, long threadId) {
+            boolean reentrant = writeHolds > 0 && writeOwner == threadId;
+            if (mode == Mode.EXCLUSIVE) {
+                if (reentrant) {
+                    return true;
+                }
+                // 公平锁只允许队首获取
+                if (fair && !fairQueue.isEmpty() && fairQueue.peekFirst() != ticket) {
+                    return false;
+                }
+                return writeHolds == 0 && readHolds.isEmpty();
+            }
+            // 没有写锁，或者写锁是自己持有的，都可以加读锁
+            return writeHolds == 0 || reentrant;
+        }
+
+        private void doAcquire(Mode mode, long leaseNanos, long now, long threadId) {
+            boolean wasIdle = isIdle();
+            long expireAt = leaseNanos > 0 ? now + leaseNanos : NO_EXPIRE;
+            if (mode == Mode.EXCLUSIVE) {
+                writeOwner = threadId;
+                writeHolds++;
+                writeExpireAt = expireAt;
+            } else {
+                long[] hold = readHolds.computeIfAbsent(threadId, key -> new long[2]);
+                hold[0]++;
+                hold[1] = expireAt;
+            }
+            // 从空闲变为被持有，强引用起来防止被回收
+            if (wasIdle) {
+                table.heldStates.put(name, this);
+            }
+        }
+
+        private void afterRelease() {
+            if (isIdle()) {
+                table.heldStates.remove(name, this);
+            }
+            changed.signalAll();
+        }
+
+        /**
+         * 清理租约已经过期的持有者
+         */
+        private void purgeExpired(long now) {
+            boolean purged = false;
+            if (writeHolds > 0 && writeExpireAt != NO_EXPIRE && writeExpireAt - now <= 0) {
+                writeHolds = 0;
+                purged = true;
+            }
+            Iterator<long[]> iterator = readHolds.values().iterator();
+            while (iterator.hasNext()) {
+                long[] hold = iterator.next();
+                if (hold[1] != NO_EXPIRE && hold[1] - now <= 0) {
+                    iterator.remove();
+                    purged = true;
+                }
+            }
+            if (purged) {
+                afterRelease();
+            }
+        }
+
+        /**
+         * 最早的租约过期时间，没有会过期的持有者时返回NO_EXPIRE
+         */
+        private long nextExpireAt() {
+            long next = writeHolds > 0 ? writeExpireAt : NO_EXPIRE;
+            for (long[] hold : readHolds.values()) {
+                if (hold[1] != NO_EXPIRE && (next == NO_EXPIRE || hold[1] - next < 0)) {
+                    next = hold[1];
+                }
+            }
+            return next;
+        }
+
+        private IllegalMonitorStateException notHeld(long threadId) {
+            return new IllegalMonitorStateException("attempt to unlock lock, not locked by current thread by node id: local thread-id: " + threadId);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 public @interface MyLock {
     /**
      * 锁的名称。这是一个必填项，没有默认值。
+     * 锁类型为多key锁（联锁）时，名称中的表达式可以返回集合或数组，每个元素对应一把锁，解析结果为空时抛出异常。
      *
      * @return 返回锁的名称。
      */
@@ -35,6 +36,7 @@ public @interface MyLock {
 
     /**
      * 锁的租约时间。默认值为-1，表示没有设置租约时间。
+     * 锁类型为信号量（PERMIT_SEMAPHORE）时必须大于0，即许可的过期时间。
      *
      * @return 返回锁的租约时间。
      */
@@ -64,5 +66,52 @@ public @interface MyLock {
      */
     MyLockStrategy lockStrategy() default MyLockStrategy.SKIP_AFTER_RETRY_TIMEOUT;
 
-}
+    /**
+     * 是否先获取本地锁再获取分布式锁，默认为false。
+     * 开启后同一个JVM内相同锁名称的线程先在本地排队，只有拿到本地锁的线程才会去Redis竞争，适用于单机内的热点key。
+     * 返回CompletableFuture或Mono的异步方法、多key锁、JVM内的锁类型以及信号量、限流器不做本地预过滤。
+     *
+     * @return 返回是否开启本地锁预过滤。
+     */
+    boolean localFirst() default false;
 
+    /**
+     * 是否开启自适应租约，默认为false。
+     * 开启后忽略leaseTime，根据方法历史耗时的p99自动设置租约时间，不启用看门狗，
+     * 由共享的续期线程在快到期时批量续期。只对同步方法的可重入锁和公平锁生效。
+     *
+     * @return 返回是否开启自适应租约。
+     */
+    boolean adaptiveLease() default false;
+
+    /**
+     * 信号量的许可数量，默认为1。只对PERMIT_SEMAPHORE生效。
+     * 同一个锁名称最多允许permits个持有者同时执行，只在信号量第一次创建时设置，之后修改需要手动调整Redis中的许可数。
+     *
+     * @return 返回许可数量。
+     */
+    int permits() default 1;
+
+    /**
+     * 限流器的速率，即每个rateInterval内允许加锁的次数，默认为1。只对RATE_LIMITER生效。
+     * 只在限流器第一次创建时设置。
+     *
+     * @return 返回限流速率。
+     */
+    long rate() default 1;
+
+    /**
+     * 限流器的速率间隔，默认为1。只对RATE_LIMITER生效。
+     *
+     * @return 返回速率间隔。
+     */
+    long rateInterval() default 1;
+
+    /**
+     * 限流器速率间隔的时间单位，默认为秒。只对RATE_LIMITER生效。
+     *
+     * @return 返回速率间隔的时间单位。
+     */
+    TimeUnit rateUnit() default TimeUnit.SECONDS;
+
+}
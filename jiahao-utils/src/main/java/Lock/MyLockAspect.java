@@ -1,26 +1,31 @@
 package Lock;
 
-import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.redisson.api.RLock;
+import org.springframework.context.expression.AnnotatedElementKey;
 import org.springframework.context.expression.MethodBasedEvaluationContext;
 import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.core.annotation.Order;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.TypedValue;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
-import org.springframework.util.ObjectUtils;
 
 import java.lang.reflect.Method;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 /**
  * <big>注解的切面处理类</big>
@@ -28,38 +33,207 @@ import java.util.regex.Pattern;
  * @author 13684
  * @date 2024/4/3
  */
+@Aspect
 @Component
 @Order(0)
 @RequiredArgsConstructor
 public class MyLockAspect {
     private final MyLockFactory myLockFactory;
+    private final MyLockMetrics myLockMetrics;
+    private final MyLockLeaseManager myLockLeaseManager;
     @Around("@annotation(myLock)")
     public Object tryLock(ProceedingJoinPoint pjp, MyLock myLock) throws Throwable {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        // 多key锁解析出一组名称，组合成一把锁
+        if (myLock.lockType().isMultiKey()) {
+            List<String> names = getLockNames(myLock.name(), pjp);
+            if (names.isEmpty()) {
+                // 没有需要锁定的key时不能无锁执行，记为失败并直接报错
+                myLockMetrics.recordFailed(method, myLock, names, 0);
+                throw new IllegalArgumentException("多key锁的名称解析结果为空，无法加锁: " + myLock.name());
+            }
+            return tryLock(pjp, method, myLock, names, () -> myLockFactory.getMultiLock(myLock.lockType(), names));
+        }
         String name = getLockName(myLock.name(), pjp);
+        return tryLock(pjp, method, myLock, Collections.singletonList(name), () -> myLockFactory.getLock(myLock, name));
+    }
 
-        RLock lock = myLockFactory.getLock(myLock.lockType(), name);
-
-        boolean isLock = myLock.lockStrategy().tryLock(lock, myLock);
-        if (!isLock) {
-            return null;
+    /**
+     * 加锁并执行方法
+     * @param pjp 切入点
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param names 解析后的锁名称
+     * @param lockSupplier 锁的获取方法
+     * @return 方法执行结果
+     */
+    private Object tryLock(ProceedingJoinPoint pjp, Method method, MyLock myLock, List<String> names, Supplier<RLock> lockSupplier) throws Throwable {
+        // 返回异步结果的方法走非阻塞加锁，等待锁期间不占用线程
+        Class<?> returnType = ((MethodSignature) pjp.getSignature()).getReturnType();
+        if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+            return tryLockAsync(pjp, method, myLock, names, lockSupplier.get());
+        }
+        if (MyLockReactiveSupport.isMono(returnType)) {
+            return MyLockReactiveSupport.tryLock(pjp, method, myLock, names, lockSupplier, myLockMetrics);
         }
 
+        long start = System.nanoTime();
+        // 开启本地预过滤时，先在JVM内排队，同一个key每个节点只有一个线程去竞争分布式锁；
+        // JVM内的锁类型本身就是本地锁，信号量和限流器允许多个持有者，都不做预过滤
+        MyLockType lockType = myLock.lockType();
+        Lock localLock = myLock.localFirst() && !lockType.isMultiKey() && !lockType.isLocal() && !lockType.isShared()
+                ? myLockFactory.getLocalLock(lockType, names.get(0)) : null;
+        boolean isLocalLock = false;
         try {
-            return pjp.proceed();
+            isLocalLock = localLock == null || tryLockAndRecord(method, myLock, names, start, () -> myLock.lockStrategy().tryLocalLock(localLock, myLock));
+            if (!isLocalLock) {
+                return null;
+            }
+
+            RLock lock = lockSupplier.get();
+
+            // 自适应租约：按方法历史耗时设置租约，不使用看门狗
+            boolean adaptiveLease = myLock.adaptiveLease() && myLockLeaseManager.supports(myLock.lockType());
+            long leaseMillis = adaptiveLease ? myLockLeaseManager.leaseMillis(method) : -1;
+
+            // 本地预过滤已经等待的时间从分布式锁的等待时间中扣除，总等待时间不超过waitTime
+            long waitMillis = Math.max(0, myLock.unit().toMillis(myLock.waitTime())
+                    - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            boolean isLock = tryLockAndRecord(method, myLock, names, start, () -> adaptiveLease
+                    ? myLock.lockStrategy().tryLock(lock, myLock, waitMillis, leaseMillis, TimeUnit.MILLISECONDS)
+                    : myLock.lockStrategy().tryLock(lock, myLock, waitMillis, myLock.leaseTime(), myLock.unit()));
+            if (!isLock) {
+                return null;
+            }
+            myLockMetrics.recordAcquired(method, myLock, names, System.nanoTime() - start);
+
+            long lockedAt = System.nanoTime();
+            long leaseHandle = adaptiveLease ? myLockLeaseManager.register(lock.getName(), Thread.currentThread().getId(), leaseMillis) : 0;
+            try {
+                return pjp.proceed();
+            } finally {
+                long heldNanos = System.nanoTime() - lockedAt;
+                if (adaptiveLease) {
+                    myLockLeaseManager.unregister(leaseHandle);
+                    myLockLeaseManager.recordDuration(method, TimeUnit.NANOSECONDS.toMillis(heldNanos));
+                }
+                lock.unlock();
+                myLockMetrics.recordHeld(method, myLock, heldNanos);
+            }
         } finally {
-            lock.unlock();
+            if (localLock != null && isLocalLock) {
+                localLock.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * 按策略加锁并记录失败的指标
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param names 解析后的锁名称
+     * @param start 开始等待的时间
+     * @param locker 加锁的动作
+     * @return 是否加锁成功
+     */
+    private boolean tryLockAndRecord(Method method, MyLock myLock, List<String> names, long start, LockAction locker) throws InterruptedException {
+        boolean isLock;
+        try {
+            isLock = locker.tryLock();
+        } catch (InterruptedException | RuntimeException e) {
+            myLockMetrics.recordFailed(method, myLock, names, System.nanoTime() - start);
+            throw e;
+        }
+        if (!isLock) {
+            myLockMetrics.recordSkipped(method, myLock, names, System.nanoTime() - start);
         }
+        return isLock;
+    }
 
+    /**
+     * 加锁的动作
+     */
+    private interface LockAction {
+        boolean tryLock() throws InterruptedException;
     }
 
     /**
-     * SPEL的正则规则
+     * 异步加锁的持有者标识，使用负数避免和真实线程id冲突
      */
-    private static final Pattern PATTERN = Pattern.compile("\\#\\{([^\\}]*)\\}");
+    private static final AtomicLong ASYNC_THREAD_ID = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * 异步加锁，方法返回的future完成后再异步解锁
+     * @param pjp 切入点
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param names 解析后的锁名称
+     * @param lock 锁对象
+     * @return 方法执行结果的future，获取锁失败时按策略返回null或异常完成
+     */
+    private CompletableFuture<Object> tryLockAsync(ProceedingJoinPoint pjp, Method method, MyLock myLock, List<String> names, RLock lock) {
+        long threadId = nextAsyncThreadId();
+        long start = System.nanoTime();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        // 加锁完成的回调可能在Redisson的IO线程上，这里切换到异步线程执行业务方法
+        myLock.lockStrategy().tryLockAsync(lock, myLock, threadId).whenCompleteAsync((isLock, e) -> {
+            if (e != null) {
+                myLockMetrics.recordFailed(method, myLock, names, System.nanoTime() - start);
+                result.completeExceptionally(e);
+                return;
+            }
+            if (!isLock) {
+                myLockMetrics.recordSkipped(method, myLock, names, System.nanoTime() - start);
+                result.complete(null);
+                return;
+            }
+            long lockedAt = System.nanoTime();
+            myLockMetrics.recordAcquired(method, myLock, names, lockedAt - start);
+            CompletionStage<?> stage;
+            try {
+                stage = (CompletionStage<?>) pjp.proceed();
+            } catch (Throwable t) {
+                lock.unlockAsync(threadId);
+                myLockMetrics.recordHeld(method, myLock, System.nanoTime() - lockedAt);
+                result.completeExceptionally(t);
+                return;
+            }
+            if (stage == null) {
+                lock.unlockAsync(threadId);
+                myLockMetrics.recordHeld(method, myLock, System.nanoTime() - lockedAt);
+                result.complete(null);
+                return;
+            }
+            // 方法返回的future完成后解锁，解锁完成后再把结果交给调用方
+            stage.whenComplete((value, ex) -> lock.unlockAsync(threadId).whenComplete((v, unlockEx) -> {
+                myLockMetrics.recordHeld(method, myLock, System.nanoTime() - lockedAt);
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(value);
+                }
+            }));
+        });
+        return result;
+    }
+
+    static long nextAsyncThreadId() {
+        return ASYNC_THREAD_ID.getAndIncrement();
+    }
+
     /**
      * 方法参数解析器
      */
     private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+    /**
+     * 锁名称模板缓存，键为注解所在的方法
+     */
+    private static final Map<Method, MyLockNameTemplate> TEMPLATE_CACHE = new ConcurrentHashMap<>(64);
+    /**
+     * 目标方法缓存，键为方法和目标类，避免每次都沿类层级反射查找
+     */
+    private static final Map<AnnotatedElementKey, Method> METHOD_CACHE = new ConcurrentHashMap<>(64);
 
     /**
      * 解析锁名称
@@ -68,30 +242,36 @@ public class MyLockAspect {
      * @return 解析后的锁名称
      */
     private String getLockName(String name, ProceedingJoinPoint pjp) {
-        // 1.判断是否存在spel表达式
-        if (StringUtils.isBlank(name) || !name.contains("#")) {
-            // 不存在，直接返回
-            return name;
+        // 1.获取编译好的模板，同一个方法只解析一次
+        MyLockNameTemplate template = getTemplate(name, pjp);
+        // 2.不存在spel表达式，直接返回，无需构建上下文
+        if (template.isConstant()) {
+            return template.resolve(null);
         }
-        // 2.构建context,也就是SPEL表达式获取参数的上下文环境，这里上下文就是切入点的参数列表
-        EvaluationContext context = new MethodBasedEvaluationContext(
+        // 3.求值并拼接锁名称
+        return template.resolve(createContext(pjp));
+    }
+
+    /**
+     * 解析多key锁的名称
+     * @param name 原始锁名称
+     * @param pjp 切入点
+     * @return 去重排序后的锁名称
+     */
+    private List<String> getLockNames(String name, ProceedingJoinPoint pjp) {
+        MyLockNameTemplate template = getTemplate(name, pjp);
+        return template.resolveAll(template.isConstant() ? null : createContext(pjp));
+    }
+
+    private MyLockNameTemplate getTemplate(String name, ProceedingJoinPoint pjp) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        return TEMPLATE_CACHE.computeIfAbsent(method, key -> MyLockNameTemplate.compile(name));
+    }
+
+    private EvaluationContext createContext(ProceedingJoinPoint pjp) {
+        // 构建context,也就是SPEL表达式获取参数的上下文环境，这里上下文就是切入点的参数列表
+        return new MethodBasedEvaluationContext(
                 TypedValue.NULL, resolveMethod(pjp), pjp.getArgs(), PARAMETER_NAME_DISCOVERER);
-        // 3.构建SPEL解析器
-        ExpressionParser parser = new SpelExpressionParser();
-        // 4.循环处理，因为表达式中可以包含多个表达式
-        Matcher matcher = PATTERN.matcher(name);
-        while (matcher.find()) {
-            // 4.1.获取表达式
-            String tmp = matcher.group();
-            String group = matcher.group(1);
-            // 4.2.这里要判断表达式是否以 T字符开头，这种属于解析静态方法，不走上下文
-            Expression expression = parser.parseExpression(group.charAt(0) == 'T' ? group : "#" + group);
-            // 4.3.解析出表达式对应的值
-            Object value = expression.getValue(context);
-            // 4.4.用值替换锁名称中的SPEL表达式
-            name = name.replace(tmp, ObjectUtils.nullSafeToString(value));
-        }
-        return name;
     }
 
     private Method resolveMethod(ProceedingJoinPoint pjp) {
@@ -99,16 +279,26 @@ public class MyLockAspect {
         MethodSignature signature = (MethodSignature)pjp.getSignature();
         // 2.获取字节码
         Class<?> clazz = pjp.getTarget().getClass();
-        // 3.方法名称
+        // 3.先从缓存获取
+        AnnotatedElementKey cacheKey = new AnnotatedElementKey(signature.getMethod(), clazz);
+        Method method = METHOD_CACHE.get(cacheKey);
+        if (method != null) {
+            return method;
+        }
+        // 4.方法名称
         String name = signature.getName();
-        // 4.方法参数列表
+        // 5.方法参数列表
         Class<?>[] parameterTypes = signature.getMethod().getParameterTypes();
-        return tryGetDeclaredMethod(clazz, name, parameterTypes);
+        method = tryGetDeclaredMethod(clazz, name, parameterTypes);
+        if (method != null) {
+            METHOD_CACHE.put(cacheKey, method);
+        }
+        return method;
     }
 
     private Method tryGetDeclaredMethod(Class<?> clazz, String name, Class<?> ... parameterTypes){
         try {
-            // 5.反射获取方法
+            // 6.反射获取方法
             return clazz.getDeclaredMethod(name, parameterTypes);
         } catch (NoSuchMethodException e) {
             Class<?> superClass = clazz.getSuperclass();
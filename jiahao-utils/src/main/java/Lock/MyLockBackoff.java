@@ -0,0 +1,107 @@
+package Lock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.redisson.api.RLock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>指数退避加锁</big>
+ * <p>每次只做一次非阻塞的加锁尝试，失败后按指数增长并带随机抖动的间隔重试，
+ * 不依赖Redisson的pub/sub唤醒，避免热点锁释放时所有等待者同时醒来冲击Redis</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLockBackoff {
+    /**
+     * 第一次重试的间隔上限（毫秒）
+     */
+    private static final long BASE_DELAY_MILLIS = 10;
+    /**
+     * 重试间隔的最大值（毫秒）
+     */
+    private static final long MAX_DELAY_MILLIS = 500;
+    /**
+     * 异步重试使用的调度线程
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("lock-backoff-%d").setDaemon(true).build());
+
+    private MyLockBackoff() {
+    }
+
+    /**
+     * 在等待时间内按退避间隔重复尝试加锁
+     * @param lock 分布式锁对象
+     * @param waitMillis 最大等待时间（毫秒）
+     * @param leaseTime 租约时间
+     * @param unit 租约时间单位
+     * @return 是否加锁成功
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    static boolean tryLock(RLock lock, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        for (int attempt = 0; ; attempt++) {
+            if (lock.tryLock(0, leaseTime, unit)) {
+                return true;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(delayMillis(attempt), remainingMillis));
+        }
+    }
+
+    /**
+     * 异步版本，重试间隔期间不占用线程
+     * @param lock 分布式锁对象
+     * @param waitMillis 最大等待时间（毫秒）
+     * @param leaseTime 租约时间
+     * @param unit 租约时间单位
+     * @param threadId 锁的持有者标识
+     * @return 加锁结果
+     */
+    static CompletableFuture<Boolean> tryLockAsync(RLock lock, long waitMillis, long leaseTime, TimeUnit unit, long threadId) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        attemptAsync(lock, deadline, leaseTime, unit, threadId, 0, result);
+        return result;
+    }
+
+    private static void attemptAsync(RLock lock, long deadline, long leaseTime, TimeUnit unit, long threadId,
+                                     int attempt, CompletableFuture<Boolean> result) {
+        lock.tryLockAsync(0, leaseTime, unit, threadId).whenComplete((isLock, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (isLock) {
+                result.complete(true);
+                return;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                result.complete(false);
+                return;
+            }
+            SCHEDULER.schedule(() -> attemptAsync(lock, deadline, leaseTime, unit, threadId, attempt + 1, result),
+                    Math.min(delayMillis(attempt), remainingMillis), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * 计算第attempt次重试的间隔：上限按2的指数增长并封顶，在[1, 上限]之间随机取值（full jitter）
+     * @param attempt 已经失败的次数，从0开始
+     * @return 重试间隔（毫秒）
+     */
+    static long delayMillis(int attempt) {
+        long cap = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 16));
+        return 1 + ThreadLocalRandom.current().nextLong(cap);
+    }
+}
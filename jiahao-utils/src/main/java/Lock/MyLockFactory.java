@@ -1,11 +1,22 @@
 package Lock;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.redisson.RedissonMultiLock;
 import org.redisson.api.RLock;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -16,27 +27,112 @@ import java.util.function.Function;
  */
 @Component
 public class MyLockFactory {
+    /**
+     * 本地锁的分段数量
+     */
+    private static final int LOCAL_LOCK_STRIPES = 1024;
+    /**
+     * 本地预过滤的锁表，每个锁名称一把锁，不同名称之间互不影响，空闲时可被回收。
+     * 与LOCAL_开头的锁类型分开，同名的本地锁和预过滤不会互相阻塞
+     */
+    private final MyLocalLockTable localFilterTable = new MyLocalLockTable(LOCAL_LOCK_STRIPES);
+    /**
+     * JVM内的锁表，供LOCAL_开头的锁类型使用
+     */
+    private final MyLocalLockTable localLockTable = new MyLocalLockTable(LOCAL_LOCK_STRIPES);
     /**
      * 锁处理器映射，键为锁类型，值为根据锁名称获取相应锁的函数。
      */
     private final Map<MyLockType, Function<String, RLock>> lockHandlers;
+    /**
+     * 多key锁处理器映射，键为锁类型，值为把一组锁组合成一把锁的函数。
+     */
+    private final Map<MyLockType, Function<RLock[], RLock>> multiLockHandlers;
+    /**
+     * 需要注解参数的锁处理器映射（信号量、限流器），键为锁类型，值为根据注解和锁名称获取相应锁的函数。
+     */
+    private final Map<MyLockType, BiFunction<MyLock, String, RLock>> sharedLockHandlers;
+    /**
+     * 已经初始化过许可数或速率的锁名称，避免每次加锁都多一次Redis请求
+     */
+    private final Cache<String, Boolean> initializedNames = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build();
 
     /**
      * MyLockFactory构造函数。
      * 初始化锁处理器映射，根据不同的锁类型注册相应的锁获取函数。
+     * 没有Redisson客户端时只注册JVM内的锁类型，单机部署和测试可以不依赖Redis。
      *
-     * @param redissonClient Redisson客户端，用于获取各种类型的锁。
+     * @param redissonClientProvider Redisson客户端，用于获取各种类型的分布式锁，可以不存在。
      */
-    public MyLockFactory(RedissonClient redissonClient) {
+    public MyLockFactory(ObjectProvider<RedissonClient> redissonClientProvider) {
         this.lockHandlers = new EnumMap<>(MyLockType.class);
-        // 注册可重入锁的获取函数
-        this.lockHandlers.put(MyLockType.RE_ENTRANT_LOCK, redissonClient::getLock);
-        // 注册公平锁的获取函数
-        this.lockHandlers.put(MyLockType.FAIR_LOCK, redissonClient::getFairLock);
-        // 注册读锁的获取函数
-        this.lockHandlers.put(MyLockType.READ_LOCK, name -> redissonClient.getReadWriteLock(name).readLock());
-        // 注册写锁的获取函数
-        this.lockHandlers.put(MyLockType.WRITE_LOCK, name -> redissonClient.getReadWriteLock(name).writeLock());
+        RedissonClient redissonClient = redissonClientProvider.getIfAvailable();
+        if (redissonClient != null) {
+            // 注册可重入锁的获取函数
+            this.lockHandlers.put(MyLockType.RE_ENTRANT_LOCK, redissonClient::getLock);
+            // 注册公平锁的获取函数
+            this.lockHandlers.put(MyLockType.FAIR_LOCK, redissonClient::getFairLock);
+            // 注册读锁的获取函数
+            this.lockHandlers.put(MyLockType.READ_LOCK, name -> redissonClient.getReadWriteLock(name).readLock());
+            // 注册写锁的获取函数
+            this.lockHandlers.put(MyLockType.WRITE_LOCK, name -> redissonClient.getReadWriteLock(name).writeLock());
+            // 多key锁只有一个名称时退化为可重入锁
+            this.lockHandlers.put(MyLockType.MULTI_LOCK, redissonClient::getLock);
+        }
+        // 注册JVM内锁的获取函数
+        this.lockHandlers.put(MyLockType.LOCAL_RE_ENTRANT_LOCK,
+                name -> new MyLocalLock(localLockTable.getState(name), MyLocalLockTable.Mode.EXCLUSIVE, false));
+        this.lockHandlers.put(MyLockType.LOCAL_FAIR_LOCK,
+                name -> new MyLocalLock(localLockTable.getState(name), MyLocalLockTable.Mode.EXCLUSIVE, true));
+        this.lockHandlers.put(MyLockType.LOCAL_READ_LOCK,
+                name -> new MyLocalLock(localLockTable.getState(name), MyLocalLockTable.Mode.SHARED, false));
+        this.lockHandlers.put(MyLockType.LOCAL_WRITE_LOCK,
+                name -> new MyLocalLock(localLockTable.getState(name), MyLocalLockTable.Mode.EXCLUSIVE, false));
+
+        this.multiLockHandlers = new EnumMap<>(MyLockType.class);
+        // 注册联锁的组合函数
+        this.multiLockHandlers.put(MyLockType.MULTI_LOCK, RedissonMultiLock::new);
+
+        this.sharedLockHandlers = new EnumMap<>(MyLockType.class);
+        if (redissonClient != null) {
+            // 注册信号量的获取函数
+            this.sharedLockHandlers.put(MyLockType.PERMIT_SEMAPHORE, (myLock, name) -> {
+                // 许可不过期时持有者宕机后永远不会归还，必须设置租约
+                if (myLock.leaseTime() <= 0) {
+                    throw new IllegalArgumentException(MyLockType.PERMIT_SEMAPHORE + "类型的锁必须设置大于0的leaseTime: " + name);
+                }
+                RPermitExpirableSemaphore semaphore = redissonClient.getPermitExpirableSemaphore(name);
+                initialize(MyLockType.PERMIT_SEMAPHORE, name, () -> semaphore.trySetPermits(myLock.permits()));
+                return new MyPermitSemaphoreLock(semaphore, myLock.unit().toMillis(myLock.leaseTime()));
+            });
+            // 注册限流器的获取函数
+            this.sharedLockHandlers.put(MyLockType.RATE_LIMITER, (myLock, name) -> {
+                RRateLimiter rateLimiter = redissonClient.getRateLimiter(name);
+                initialize(MyLockType.RATE_LIMITER, name, () -> rateLimiter.trySetRate(RateType.OVERALL, myLock.rate(),
+                        myLock.rateUnit().toMillis(myLock.rateInterval()), RateIntervalUnit.MILLISECONDS));
+                return new MyRateLimiterLock(rateLimiter);
+            });
+        }
+    }
+
+    /**
+     * 根据锁注解和名称获取相应的锁，信号量、限流器会按注解上的参数初始化。
+     *
+     * @param myLock 锁注解，决定锁类型以及许可数、速率等参数。
+     * @param name 锁的名称，用于标识具体的锁实例。
+     * @return 返回根据锁类型和名称获取的锁实例。
+     */
+    public RLock getLock(MyLock myLock, String name) {
+        if (!myLock.lockType().isShared()) {
+            return getLock(myLock.lockType(), name);
+        }
+        BiFunction<MyLock, String, RLock> handler = sharedLockHandlers.get(myLock.lockType());
+        if (handler == null) {
+            throw new IllegalStateException("没有可用的RedissonClient，无法获取" + myLock.lockType() + "类型的锁");
+        }
+        return handler.apply(myLock, name);
     }
 
     /**
@@ -47,7 +143,54 @@ public class MyLockFactory {
      * @return 返回根据锁类型和名称获取的Redisson锁实例。
      */
     public RLock getLock(MyLockType lockType, String name) {
-        return lockHandlers.get(lockType).apply(name);
+        Function<String, RLock> handler = lockHandlers.get(lockType);
+        if (handler == null) {
+            if (lockType.isShared()) {
+                throw new IllegalStateException(lockType + "类型的锁需要注解参数，请使用getLock(MyLock, String)");
+            }
+            throw new IllegalStateException("没有可用的RedissonClient，无法获取" + lockType + "类型的锁");
+        }
+        return handler.apply(name);
+    }
+
+    /**
+     * 根据锁类型和一组名称获取组合锁，一次调用获取全部锁。
+     *
+     * @param lockType 锁类型，必须为多key的锁类型。
+     * @param names 锁的名称，调用方需保证顺序固定（例如排序后）以避免死锁。
+     * @return 返回组合后的Redisson锁实例。
+     */
+    public RLock getMultiLock(MyLockType lockType, List<String> names) {
+        RLock[] locks = new RLock[names.size()];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = getLock(lockType, names.get(i));
+        }
+        return multiLockHandlers.get(lockType).apply(locks);
+    }
+
+    /**
+     * 根据锁类型和名称获取本地锁，用于在竞争分布式锁之前先在JVM内排队。
+     * 读锁对应本地读锁，其余类型都对应本地写锁（互斥）。
+     *
+     * @param lockType 锁类型
+     * @param name 锁的名称
+     * @return 返回本地锁实例
+     */
+    public Lock getLocalLock(MyLockType lockType, String name) {
+        boolean isRead = lockType == MyLockType.READ_LOCK || lockType == MyLockType.LOCAL_READ_LOCK;
+        return new MyLocalLock(localFilterTable.getState(name),
+                isRead ? MyLocalLockTable.Mode.SHARED : MyLocalLockTable.Mode.EXCLUSIVE, false);
+    }
+
+    /**
+     * 每个锁名称只初始化一次，初始化本身是幂等的（只在不存在时设置），并发时重复执行也没有影响
+     */
+    private void initialize(MyLockType lockType, String name, Runnable initializer) {
+        String key = lockType + ":" + name;
+        if (initializedNames.getIfPresent(key) == null) {
+            initializer.run();
+            initializedNames.put(key, Boolean.TRUE);
+        }
     }
 
 }
@@ -0,0 +1,105 @@
+package Lock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <big>热点锁名称统计</big>
+ * <p>Space-Saving算法，只保留固定数量的计数器，内存占用有界；计数可能偏大，但偏大的部分不超过error。
+ * 按锁名称的hash分段，每段单独加锁、单独淘汰，同一个key总是落在同一段，加锁和淘汰时的扫描都只涉及一段</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLockHotKeySketch {
+    /**
+     * 分段数，必须是2的幂
+     */
+    private static final int STRIPES = 8;
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity 最多保留的计数器个数，平均分到每一段
+     */
+    MyLockHotKeySketch(int capacity) {
+        int stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * 记录一次出现
+     * @param key 锁名称
+     */
+    void offer(String key) {
+        int h = key.hashCode();
+        stripes[(h ^ (h >>> 16)) & (STRIPES - 1)].offer(key);
+    }
+
+    /**
+     * 获取次数最多的前n个key
+     * @param n 数量
+     * @return 按次数倒序排列的热点key
+     */
+    List<MyLockStats.HotKey> top(int n) {
+        List<MyLockStats.HotKey> hotKeys = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.collect(hotKeys);
+        }
+        hotKeys.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return hotKeys.size() > n ? new ArrayList<>(hotKeys.subList(0, n)) : hotKeys;
+    }
+
+    /**
+     * 一段计数器
+     */
+    private static final class Stripe {
+        /**
+         * 最多保留的计数器个数
+         */
+        private final int capacity;
+        /**
+         * 计数器，值为 [次数, 误差]
+         */
+        private final Map<String, long[]> counters;
+
+        private Stripe(int capacity) {
+            this.capacity = capacity;
+            this.counters = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void offer(String key) {
+            long[] counter = counters.get(key);
+            if (counter != null) {
+                counter[0]++;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(key, new long[]{1, 0});
+                return;
+            }
+            // 计数器已满，替换掉次数最少的key，新key继承它的次数作为误差
+            String minKey = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (entry.getValue()[0] < min) {
+                    min = entry.getValue()[0];
+                    minKey = entry.getKey();
+                }
+            }
+            counters.remove(minKey);
+            counters.put(key, new long[]{min + 1, min});
+        }
+
+        synchronized void collect(List<MyLockStats.HotKey> hotKeys) {
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                hotKeys.add(new MyLockStats.HotKey(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+        }
+    }
+}
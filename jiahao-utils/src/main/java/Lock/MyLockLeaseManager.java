@@ -0,0 +1,249 @@
+package Lock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <big>自适应租约管理</big>
+ * <p>根据方法历史耗时的p99设置锁的租约时间，不依赖Redisson看门狗；
+ * 所有持有中的锁共用一个续期线程，只有快到期的锁才会续期，并且每个周期合并成一次批量请求</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@Slf4j
+@Component
+public class MyLockLeaseManager {
+    /**
+     * 续期检查的周期（毫秒）
+     */
+    private static final long TICK_MILLIS = 200;
+    /**
+     * 最小租约时间（毫秒），需要留出几个检查周期和一次Redis往返的余量
+     */
+    private static final long MIN_LEASE_MILLIS = 1000;
+    /**
+     * 最大租约时间（毫秒）
+     */
+    private static final long MAX_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * 没有历史耗时时的默认租约时间（毫秒），与看门狗的默认值一致
+     */
+    private static final long DEFAULT_LEASE_MILLIS = 30_000;
+    /**
+     * 租约时间相对p99耗时的倍数
+     */
+    private static final int LEASE_FACTOR = 2;
+    /**
+     * 续期脚本，只有锁仍被当前持有者持有时才续期，和Redisson看门狗的续期逻辑一致
+     */
+    private static final String RENEW_SCRIPT = "if (redis.call('hexists', KEYS[1], ARGV[2]) == 1) then " +
+            "redis.call('pexpire', KEYS[1], ARGV[1]); " +
+            "return 1; " +
+            "end; " +
+            "return 0;";
+
+    private final RedissonClient redissonClient;
+    /**
+     * 各个方法的耗时统计
+     */
+    private final Map<Method, LeaseEstimator> estimators = new ConcurrentHashMap<>(64);
+    /**
+     * 持有中的锁
+     */
+    private final Map<Long, HeldLock> heldLocks = new ConcurrentHashMap<>(256);
+    private final AtomicLong handleGenerator = new AtomicLong();
+    /**
+     * 共享的续期线程，没有Redisson客户端时为null
+     */
+    private final ScheduledExecutorService renewService;
+
+    public MyLockLeaseManager(ObjectProvider<RedissonClient> redissonClientProvider) {
+        this.redissonClient = redissonClientProvider.getIfAvailable();
+        if (redissonClient == null) {
+            this.renewService = null;
+            return;
+        }
+        this.renewService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("lock-lease-renew-%d").setDaemon(true).build());
+        this.renewService.scheduleWithFixedDelay(this::renew, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 是否支持自适应租约，只有基于hash结构存储持有者的锁才能用同一个脚本续期，JVM内的锁不需要续期
+     *
+     * @param lockType 锁类型
+     * @return 是否支持
+     */
+    public boolean supports(MyLockType lockType) {
+        return redissonClient != null && (lockType == MyLockType.RE_ENTRANT_LOCK || lockType == MyLockType.FAIR_LOCK);
+    }
+
+    /**
+     * 根据方法的历史耗时计算租约时间
+     *
+     * @param method 加锁的方法
+     * @return 租约时间（毫秒）
+     */
+    public long leaseMillis(Method method) {
+        return estimators.computeIfAbsent(method, key -> new LeaseEstimator()).leaseMillis();
+    }
+
+    /**
+     * 记录方法的执行耗时
+     *
+     * @param method 加锁的方法
+     * @param elapsedMillis 执行耗时（毫秒）
+     */
+    public void recordDuration(Method method, long elapsedMillis) {
+        estimators.computeIfAbsent(method, key -> new LeaseEstimator()).record(elapsedMillis);
+    }
+
+    /**
+     * 登记一把持有中的锁，快到期时自动续期
+     *
+     * @param lockName 锁名称
+     * @param threadId 持有锁的线程id
+     * @param leaseMillis 租约时间（毫秒）
+     * @return 登记的句柄，解锁时用于注销
+     */
+    public long register(String lockName, long threadId, long leaseMillis) {
+        long handle = handleGenerator.incrementAndGet();
+        heldLocks.put(handle, new HeldLock(lockName, redissonClient.getId() + ":" + threadId, leaseMillis));
+        return handle;
+    }
+
+    /**
+     * 注销持有中的锁
+     *
+     * @param handle 登记时返回的句柄
+     */
+    public void unregister(long handle) {
+        heldLocks.remove(handle);
+    }
+
+    /**
+     * 找出快到期的锁，合并成一次批量请求续期
+     */
+    private void renew() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Map.Entry<Long, HeldLock>> dueLocks = new ArrayList<>();
+            for (Map.Entry<Long, HeldLock> entry : heldLocks.entrySet()) {
+                HeldLock heldLock = entry.getValue();
+                // 剩余时间不足租约的三分之一（且至少两个周期）时续期
+                long threshold = Math.max(heldLock.leaseMillis / 3, TICK_MILLIS * 2);
+                if (heldLock.expireAt - now <= threshold) {
+                    dueLocks.add(entry);
+                }
+            }
+            if (dueLocks.isEmpty()) {
+                return;
+            }
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+            for (Map.Entry<Long, HeldLock> entry : dueLocks) {
+                HeldLock heldLock = entry.getValue();
+                script.evalAsync(RScript.Mode.READ_WRITE, RENEW_SCRIPT, RScript.ReturnType.BOOLEAN,
+                        Collections.singletonList(heldLock.lockName), String.valueOf(heldLock.leaseMillis), heldLock.owner);
+            }
+            BatchResult<?> result = batch.execute();
+            List<?> responses = result.getResponses();
+            for (int i = 0; i < dueLocks.size(); i++) {
+                Map.Entry<Long, HeldLock> entry = dueLocks.get(i);
+                if (Boolean.TRUE.equals(responses.get(i))) {
+                    entry.getValue().expireAt = now + entry.getValue().leaseMillis;
+                } else {
+                    // 锁已经释放或者已经丢失，不再续期
+                    heldLocks.remove(entry.getKey());
+                }
+            }
+        } catch (Exception e) {
+            log.error("lock lease renew failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (renewService != null) {
+            renewService.shutdownNow();
+        }
+    }
+
+    /**
+     * 持有中的锁
+     */
+    private static final class HeldLock {
+        private final String lockName;
+        private final String owner;
+        private final long leaseMillis;
+        private volatile long expireAt;
+
+        private HeldLock(String lockName, String owner, long leaseMillis) {
+            this.lockName = lockName;
+            this.owner = owner;
+            this.leaseMillis = leaseMillis;
+            this.expireAt = System.currentTimeMillis() + leaseMillis;
+        }
+    }
+
+    /**
+     * 方法耗时统计，保留最近的若干次耗时，定期重新计算p99
+     */
+    private static final class LeaseEstimator {
+        /**
+         * 保留的耗时样本数
+         */
+        private static final int SAMPLES = 256;
+        /**
+         * 每记录多少次重新计算一次租约
+         */
+        private static final int RECALCULATE_INTERVAL = 32;
+
+        private final long[] samples = new long[SAMPLES];
+        private int size;
+        private int next;
+        private int sinceRecalculate;
+        private volatile long leaseMillis = DEFAULT_LEASE_MILLIS;
+
+        private long leaseMillis() {
+            return leaseMillis;
+        }
+
+        private synchronized void record(long elapsedMillis) {
+            samples[next] = elapsedMillis;
+            next = (next + 1) % SAMPLES;
+            size = Math.min(size + 1, SAMPLES);
+            // 前几次样本较少时每次都计算，之后按间隔计算
+            if (size < RECALCULATE_INTERVAL || ++sinceRecalculate >= RECALCULATE_INTERVAL) {
+                sinceRecalculate = 0;
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                long p99 = sorted[(int) Math.ceil(size * 0.99) - 1];
+                leaseMillis = Math.min(MAX_LEASE_MILLIS, Math.max(MIN_LEASE_MILLIS, p99 * LEASE_FACTOR));
+            }
+        }
+    }
+}
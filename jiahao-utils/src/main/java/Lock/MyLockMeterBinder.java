@@ -0,0 +1,54 @@
+package Lock;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>锁指标的Micrometer绑定</big>
+ * <p>类路径上有Micrometer时生效，把{@link DefaultMyLockMetrics}的每个方法的指标注册到MeterRegistry，
+ * 标签为方法、锁名称模板、锁类型和策略；方法第一次加锁时才注册</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@Component
+@ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+@RequiredArgsConstructor
+public class MyLockMeterBinder implements MeterBinder {
+    private final DefaultMyLockMetrics myLockMetrics;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        myLockMetrics.addListener(counter -> bind(registry, counter));
+    }
+
+    private static void bind(MeterRegistry registry, DefaultMyLockMetrics.TemplateCounter counter) {
+        Tags tags = Tags.of("method", counter.method, "name", counter.name,
+                "type", counter.lockType.name(), "strategy", counter.lockStrategy.name());
+        FunctionCounter.builder("my.lock.acquired", counter, c -> c.acquired.sum())
+                .description("加锁成功次数").tags(tags).register(registry);
+        FunctionCounter.builder("my.lock.skipped", counter, c -> c.skipped.sum())
+                .description("获取锁失败后跳过的次数").tags(tags).register(registry);
+        FunctionCounter.builder("my.lock.failed", counter, c -> c.failed.sum())
+                .description("获取锁失败后抛出异常的次数").tags(tags).register(registry);
+        bind(registry, "my.lock.wait", "等待锁的耗时", tags, counter.wait);
+        bind(registry, "my.lock.hold", "持有锁的耗时", tags, counter.hold);
+    }
+
+    private static void bind(MeterRegistry registry, String name, String description, Tags tags,
+                             DefaultMyLockMetrics.Timer timer) {
+        FunctionTimer.builder(name, timer, t -> t.count.sum(), t -> t.total.sum(), TimeUnit.NANOSECONDS)
+                .description(description).tags(tags).register(registry);
+        TimeGauge.builder(name + ".max", timer, TimeUnit.NANOSECONDS, t -> t.max.get())
+                .description(description + "（最大值）").tags(tags).register(registry);
+    }
+}
@@ -0,0 +1,60 @@
+package Lock;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * <big>锁的指标收集接口</big>
+ * <p>默认实现为{@link DefaultMyLockMetrics}，按加锁的方法统计，类路径上有Micrometer时由{@link MyLockMeterBinder}注册到MeterRegistry；
+ * 需要对接其他监控系统时，实现本接口并注册为&#064;Primary的Bean即可</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+public interface MyLockMetrics {
+    /**
+     * 记录一次成功的加锁
+     *
+     * @param method 加了锁注解的方法，同一个锁名称模板可能用在多个方法上
+     * @param myLock 锁注解，可以用锁名称模板、锁类型、策略作为指标的标签
+     * @param lockNames 解析后的锁名称
+     * @param waitNanos 等待锁的耗时（纳秒）
+     */
+    void recordAcquired(Method method, MyLock myLock, List<String> lockNames, long waitNanos);
+
+    /**
+     * 记录一次获取锁失败后跳过执行（方法直接返回null）
+     *
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param lockNames 解析后的锁名称
+     * @param waitNanos 等待锁的耗时（纳秒）
+     */
+    void recordSkipped(Method method, MyLock myLock, List<String> lockNames, long waitNanos);
+
+    /**
+     * 记录一次获取锁失败后抛出异常
+     *
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param lockNames 解析后的锁名称
+     * @param waitNanos 等待锁的耗时（纳秒）
+     */
+    void recordFailed(Method method, MyLock myLock, List<String> lockNames, long waitNanos);
+
+    /**
+     * 记录一次持有锁的耗时
+     *
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param holdNanos 从加锁成功到解锁的耗时（纳秒）
+     */
+    void recordHeld(Method method, MyLock myLock, long holdNanos);
+
+    /**
+     * 获取当前的指标快照
+     *
+     * @return 指标快照
+     */
+    MyLockStats snapshot();
+}
@@ -0,0 +1,30 @@
+package Lock;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <big>锁指标控制器</big>
+ * <p>查看各个锁名称模板的等待、持有耗时以及热点锁名称，无需打开debug日志</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@RestController
+@RequestMapping("/lock")
+@RequiredArgsConstructor
+public class MyLockMetricsController {
+    private final MyLockMetrics myLockMetrics;
+
+    /**
+     * 获取锁的指标快照
+     *
+     * @return 指标快照
+     */
+    @GetMapping("/metrics")
+    public MyLockStats getMetrics() {
+        return myLockMetrics.snapshot();
+    }
+}
@@ -0,0 +1,141 @@
+package Lock;
+
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <big>预编译的锁名称模板</big>
+ * <p>将锁名称拆分为字面量片段和编译好的SPEL表达式，重复调用时只做求值，不再解析</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLockNameTemplate {
+    /**
+     * SPEL的正则规则
+     */
+    private static final Pattern PATTERN = Pattern.compile("\\#\\{([^\\}]*)\\}");
+    /**
+     * SPEL解析器，线程安全，全局共用一个；MIXED模式下表达式多次求值后会被编译为字节码，编译失败时自动退回解释执行
+     */
+    private static final ExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, MyLockNameTemplate.class.getClassLoader()));
+
+    /**
+     * 字面量片段，长度始终为表达式个数 + 1
+     */
+    private final String[] literals;
+    /**
+     * 编译好的表达式
+     */
+    private final Expression[] expressions;
+
+    private MyLockNameTemplate(String[] literals, Expression[] expressions) {
+        this.literals = literals;
+        this.expressions = expressions;
+    }
+
+    /**
+     * 编译锁名称
+     * @param name 原始锁名称
+     * @return 锁名称模板
+     */
+    static MyLockNameTemplate compile(String name) {
+        // 1.不存在spel表达式，整个名称就是一个字面量
+        if (StringUtils.isBlank(name) || !name.contains("#")) {
+            return new MyLockNameTemplate(new String[]{name}, new Expression[0]);
+        }
+        List<String> literals = new ArrayList<>();
+        List<Expression> expressions = new ArrayList<>();
+        // 2.循环处理，因为表达式中可以包含多个表达式
+        Matcher matcher = PATTERN.matcher(name);
+        int last = 0;
+        while (matcher.find()) {
+            // 2.1.记录表达式前面的字面量
+            literals.add(name.substring(last, matcher.start()));
+            // 2.2.这里要判断表达式是否以 T字符开头，这种属于解析静态方法，不走上下文
+            String group = matcher.group(1);
+            expressions.add(PARSER.parseExpression(group.charAt(0) == 'T' ? group : "#" + group));
+            last = matcher.end();
+        }
+        literals.add(name.substring(last));
+        return new MyLockNameTemplate(literals.toArray(new String[0]), expressions.toArray(new Expression[0]));
+    }
+
+    /**
+     * 是否为不含表达式的常量名称，常量名称无需构建上下文
+     */
+    boolean isConstant() {
+        return expressions.length == 0;
+    }
+
+    /**
+     * 解析锁名称
+     * @param context SPEL表达式获取参数的上下文环境，常量名称时可以为null
+     * @return 解析后的锁名称
+     */
+    String resolve(EvaluationContext context) {
+        if (isConstant()) {
+            return literals[0];
+        }
+        StringBuilder sb = new StringBuilder(literals[0]);
+        for (int i = 0; i < expressions.length; i++) {
+            // 解析出表达式对应的值，并拼接后面的字面量
+            Object value = expressions[i].getValue(context);
+            sb.append(ObjectUtils.nullSafeToString(value)).append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析出一组锁名称，表达式的值为集合或数组时按元素展开，多个集合之间做笛卡尔积
+     * @param context SPEL表达式获取参数的上下文环境，常量名称时可以为null
+     * @return 去重并按字典序排序后的锁名称，固定的加锁顺序可以避免死锁
+     */
+    List<String> resolveAll(EvaluationContext context) {
+        if (isConstant()) {
+            return Collections.singletonList(literals[0]);
+        }
+        List<String> names = Collections.singletonList(literals[0]);
+        for (int i = 0; i < expressions.length; i++) {
+            List<String> values = toStrings(expressions[i].getValue(context));
+            List<String> next = new ArrayList<>(names.size() * values.size());
+            for (String prefix : names) {
+                for (String value : values) {
+                    next.add(prefix + value + literals[i + 1]);
+                }
+            }
+            names = next;
+        }
+        return new ArrayList<>(new TreeSet<>(names));
+    }
+
+    private static List<String> toStrings(Object value) {
+        if (value instanceof Collection) {
+            List<String> values = new ArrayList<>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                values.add(ObjectUtils.nullSafeToString(element));
+            }
+            return values;
+        }
+        if (ObjectUtils.isArray(value)) {
+            return toStrings(CollectionUtils.arrayToList(value));
+        }
+        return Collections.singletonList(ObjectUtils.nullSafeToString(value));
+    }
+}
@@ -0,0 +1,95 @@
+package Lock;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.redisson.api.RLock;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <big>响应式方法的加锁支持</big>
+ * <p>只有classpath中存在reactor时才会加载内部类，避免没有reactor的项目报错</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyLockReactiveSupport {
+    /**
+     * Mono的字节码，不存在reactor时为null
+     */
+    private static final Class<?> MONO_CLASS = loadMonoClass();
+
+    private MyLockReactiveSupport() {
+    }
+
+    /**
+     * 判断方法返回值是否为Mono
+     * @param returnType 方法返回值类型
+     * @return 是否为Mono
+     */
+    static boolean isMono(Class<?> returnType) {
+        return MONO_CLASS != null && MONO_CLASS.isAssignableFrom(returnType);
+    }
+
+    /**
+     * 订阅时异步加锁，方法返回的Mono结束（完成、异常或取消）后异步解锁
+     * @param pjp 切入点
+     * @param method 加了锁注解的方法
+     * @param myLock 锁注解
+     * @param names 解析后的锁名称
+     * @param lockSupplier 锁的获取方法
+     * @param metrics 指标收集
+     * @return 包装后的Mono
+     */
+    static Object tryLock(ProceedingJoinPoint pjp, Method method, MyLock myLock, List<String> names, Supplier<RLock> lockSupplier,
+                          MyLockMetrics metrics) {
+        return MonoLocker.tryLock(pjp, method, myLock, names, lockSupplier, metrics);
+    }
+
+    private static Class<?> loadMonoClass() {
+        String className = "reactor.core.publisher.Mono";
+        ClassLoader classLoader = MyLockReactiveSupport.class.getClassLoader();
+        return ClassUtils.isPresent(className, classLoader) ? ClassUtils.resolveClassName(className, classLoader) : null;
+    }
+
+    /**
+     * 真正使用reactor的部分，只有确认返回值为Mono时才会被加载
+     */
+    private static final class MonoLocker {
+        static Mono<Object> tryLock(ProceedingJoinPoint pjp, Method method, MyLock myLock, List<String> names, Supplier<RLock> lockSupplier,
+                                    MyLockMetrics metrics) {
+            return Mono.defer(() -> {
+                // 每次订阅都是一个独立的持有者
+                long threadId = MyLockAspect.nextAsyncThreadId();
+                long start = System.nanoTime();
+                RLock lock = lockSupplier.get();
+                return Mono.fromCompletionStage(myLock.lockStrategy().tryLockAsync(lock, myLock, threadId))
+                        .doOnError(e -> metrics.recordFailed(method, myLock, names, System.nanoTime() - start))
+                        .flatMap(isLock -> {
+                            if (!isLock) {
+                                metrics.recordSkipped(method, myLock, names, System.nanoTime() - start);
+                                return Mono.<Object>empty();
+                            }
+                            long lockedAt = System.nanoTime();
+                            metrics.recordAcquired(method, myLock, names, lockedAt - start);
+                            return Mono.usingWhen(Mono.just(lock), l -> proceed(pjp),
+                                    l -> Mono.fromCompletionStage(l.unlockAsync(threadId))
+                                            .doFinally(signal -> metrics.recordHeld(method, myLock, System.nanoTime() - lockedAt)));
+                        });
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Mono<Object> proceed(ProceedingJoinPoint pjp) {
+            try {
+                Mono<Object> mono = (Mono<Object>) pjp.proceed();
+                return mono == null ? Mono.empty() : mono;
+            } catch (Throwable t) {
+                return Mono.error(t);
+            }
+        }
+    }
+}
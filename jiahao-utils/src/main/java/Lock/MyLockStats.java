@@ -0,0 +1,72 @@
+package Lock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * <big>锁的指标快照</big>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MyLockStats {
+    // 按加锁的方法统计的指标
+    private List<TemplateStats> templates;
+    // 解析后锁名称的热点排行
+    private List<HotKey> hotKeys;
+
+    /**
+     * 单个方法的指标
+     */
+    @Data
+    @NoArgsConstructor
+    public static class TemplateStats {
+        // 加锁的方法（类名.方法名）
+        private String method;
+        // 锁名称模板（注解上的原始名称）
+        private String name;
+        // 锁类型
+        private MyLockType lockType;
+        // 锁策略
+        private MyLockStrategy lockStrategy;
+        // 加锁成功次数
+        private long acquiredCount;
+        // 获取锁失败后跳过的次数
+        private long skippedCount;
+        // 获取锁失败后抛出异常的次数
+        private long failedCount;
+        // 等待锁的总耗时（毫秒）
+        private double waitTotalMillis;
+        // 等待锁的平均耗时（毫秒）
+        private double waitMeanMillis;
+        // 等待锁的最大耗时（毫秒）
+        private double waitMaxMillis;
+        // 持有锁的总耗时（毫秒）
+        private double holdTotalMillis;
+        // 持有锁的平均耗时（毫秒）
+        private double holdMeanMillis;
+        // 持有锁的最大耗时（毫秒）
+        private double holdMaxMillis;
+    }
+
+    /**
+     * 热点锁名称
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HotKey {
+        // 解析后的锁名称
+        private String name;
+        // 估算的加锁次数（偏大）
+        private long count;
+        // 估算的最大误差，count - error 为次数的下限
+        private long error;
+    }
+}
@@ -2,6 +2,10 @@ package Lock;
 
 import org.redisson.api.RLock;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
 /**
  * <big>锁失败策略枚举</big>
  *
@@ -12,46 +16,146 @@ public enum MyLockStrategy {
     // 尝试立即获取锁，如果获取失败，则直接返回false。
     SKIP_FAST(){
         @Override
-        public boolean tryLock(RLock rLock, MyLock myLock) throws InterruptedException {
-            return rLock.tryLock(0, myLock.leaseTime(), myLock.unit());
+        public boolean tryLock(RLock rLock, MyLock myLock, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            return rLock.tryLock(0, leaseTime, unit);
+        }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock myLock) {
+            return lock.tryLock();
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock rLock, MyLock myLock, long threadId) {
+            return rLock.tryLockAsync(0, myLock.leaseTime(), myLock.unit(), threadId);
         }
     },
     // 尝试立即获取锁，如果获取失败，则抛出运行时异常。
     FAIL_FAST(){
         @Override
-        public boolean tryLock(RLock rLock, MyLock myLock) throws InterruptedException {
-            boolean b = rLock.tryLock(0, myLock.leaseTime(), myLock.unit());
+        public boolean tryLock(RLock rLock, MyLock myLock, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            boolean b = rLock.tryLock(0, leaseTime, unit);
             if (!b) {
                 throw new RuntimeException("请求太频繁");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock myLock) {
+            if (!lock.tryLock()) {
+                throw new RuntimeException("请求太频繁");
+            }
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock rLock, MyLock myLock, long threadId) {
+            return rLock.tryLockAsync(0, myLock.leaseTime(), myLock.unit(), threadId)
+                    .thenApply(MyLockStrategy::failIfNotLocked);
+        }
     },
     // 不停尝试获取锁，直到成功为止。
     KEEP_TRYING(){
         @Override
-        public boolean tryLock(RLock rLock, MyLock myLock) throws InterruptedException {
-            boolean b = rLock.tryLock(myLock.leaseTime(), myLock.unit());
+        public boolean tryLock(RLock rLock, MyLock myLock, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            rLock.lockInterruptibly(leaseTime, unit);
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock myLock) throws InterruptedException {
+            lock.lockInterruptibly();
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock rLock, MyLock myLock, long threadId) {
+            return rLock.lockAsync(myLock.leaseTime(), myLock.unit(), threadId).thenApply(v -> true);
+        }
     },
     // 尝试获取锁，如果失败，则等待指定的等待时间后再次尝试，直到成功或超过最大等待时间。
     SKIP_AFTER_RETRY_TIMEOUT(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            return lock.tryLock(prop.waitTime(), prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            return lock.tryLock(waitMillis, leaseMillis(leaseTime, unit), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock prop) throws InterruptedException {
+            return lock.tryLock(prop.waitTime(), prop.unit());
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock lock, MyLock prop, long threadId) {
+            return lock.tryLockAsync(prop.waitTime(), prop.leaseTime(), prop.unit(), threadId);
         }
     },
     // 尝试获取锁，如果失败，则等待指定的等待时间后再次尝试，如果再次失败，则抛出运行时异常。
     FAIL_AFTER_RETRY_TIMEOUT(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            boolean isLock = lock.tryLock(prop.waitTime(), prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            boolean isLock = lock.tryLock(waitMillis, leaseMillis(leaseTime, unit), TimeUnit.MILLISECONDS);
             if (!isLock) {
                 throw new RuntimeException("请求太频繁");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock prop) throws InterruptedException {
+            if (!lock.tryLock(prop.waitTime(), prop.unit())) {
+                throw new RuntimeException("请求太频繁");
+            }
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock lock, MyLock prop, long threadId) {
+            return lock.tryLockAsync(prop.waitTime(), prop.leaseTime(), prop.unit(), threadId)
+                    .thenApply(MyLockStrategy::failIfNotLocked);
+        }
+    },
+    // 在等待时间内按指数退避加随机抖动的间隔反复尝试获取锁，超时后直接返回false。适合热点锁，释放时不会所有等待者同时冲击Redis。
+    SKIP_AFTER_BACKOFF_TIMEOUT(){
+        @Override
+        public boolean tryLock(RLock lock, MyLock prop, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            return MyLockBackoff.tryLock(lock, waitMillis, leaseTime, unit);
+        }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock prop) throws InterruptedException {
+            return lock.tryLock(prop.waitTime(), prop.unit());
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock lock, MyLock prop, long threadId) {
+            return MyLockBackoff.tryLockAsync(lock, prop.unit().toMillis(prop.waitTime()), prop.leaseTime(), prop.unit(), threadId);
+        }
+    },
+    // 在等待时间内按指数退避加随机抖动的间隔反复尝试获取锁，超时后抛出运行时异常。
+    FAIL_AFTER_BACKOFF_TIMEOUT(){
+        @Override
+        public boolean tryLock(RLock lock, MyLock prop, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException {
+            if (!MyLockBackoff.tryLock(lock, waitMillis, leaseTime, unit)) {
+                throw new RuntimeException("请求太频繁");
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLocalLock(Lock lock, MyLock prop) throws InterruptedException {
+            if (!lock.tryLock(prop.waitTime(), prop.unit())) {
+                throw new RuntimeException("请求太频繁");
+            }
+            return true;
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(RLock lock, MyLock prop, long threadId) {
+            return MyLockBackoff.tryLockAsync(lock, prop.unit().toMillis(prop.waitTime()), prop.leaseTime(), prop.unit(), threadId)
+                    .thenApply(MyLockStrategy::failIfNotLocked);
+        }
     },
     ;
 
@@ -62,6 +166,68 @@ public enum MyLockStrategy {
      * @return 如果成功获取锁返回true，否则根据不同的策略返回false或抛出异常。
      * @throws InterruptedException 如果获取锁的过程中线程被中断则抛出此异常。
      */
-    public abstract boolean tryLock(RLock rLock, MyLock myLock) throws InterruptedException;
+    public boolean tryLock(RLock rLock, MyLock myLock) throws InterruptedException {
+        return tryLock(rLock, myLock, myLock.leaseTime(), myLock.unit());
+    }
+
+    /**
+     * 使用指定的租约时间尝试获取锁，用于自适应租约等租约时间不取自注解的场景。
+     * @param rLock 分布式锁对象。
+     * @param myLock 自定义锁属性对象，包含可选的等待时间。
+     * @param leaseTime 租约时间，-1表示交给看门狗续期。
+     * @param unit 租约时间的单位。
+     * @return 如果成功获取锁返回true，否则根据不同的策略返回false或抛出异常。
+     * @throws InterruptedException 如果获取锁的过程中线程被中断则抛出此异常。
+     */
+    public boolean tryLock(RLock rLock, MyLock myLock, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return tryLock(rLock, myLock, myLock.unit().toMillis(myLock.waitTime()), leaseTime, unit);
+    }
+
+    /**
+     * 使用指定的等待时间和租约时间尝试获取锁，用于本地预过滤之后只等待剩余时间等场景。
+     * @param rLock 分布式锁对象。
+     * @param myLock 自定义锁属性对象。
+     * @param waitMillis 最大等待时间（毫秒），不等待的策略忽略该参数。
+     * @param leaseTime 租约时间，-1表示交给看门狗续期。
+     * @param unit 租约时间的单位。
+     * @return 如果成功获取锁返回true，否则根据不同的策略返回false或抛出异常。
+     * @throws InterruptedException 如果获取锁的过程中线程被中断则抛出此异常。
+     */
+    public abstract boolean tryLock(RLock rLock, MyLock myLock, long waitMillis, long leaseTime, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 按相同的策略尝试获取本地锁，用于分布式锁之前的JVM内预过滤。
+     * @param lock 本地锁对象。
+     * @param myLock 自定义锁属性对象，包含可选的等待时间和单位。
+     * @return 如果成功获取锁返回true，否则根据不同的策略返回false或抛出异常。
+     * @throws InterruptedException 如果获取锁的过程中线程被中断则抛出此异常。
+     */
+    public abstract boolean tryLocalLock(Lock lock, MyLock myLock) throws InterruptedException;
+
+    /**
+     * 按相同的策略异步获取锁，等待期间不占用任何线程。
+     * @param rLock 分布式锁对象。
+     * @param myLock 自定义锁属性对象，包含锁的租期、单位和可选的等待时间。
+     * @param threadId 锁的持有者标识，异步场景下加锁和解锁不在同一个线程，需要显式指定。
+     * @return 加锁结果，成功为true，否则根据不同的策略为false或异常完成。
+     */
+    public abstract CompletionStage<Boolean> tryLockAsync(RLock rLock, MyLock myLock, long threadId);
+
+    /**
+     * 租约时间换算为毫秒，不大于0的租约（看门狗续期）保持原值
+     */
+    private static long leaseMillis(long leaseTime, TimeUnit unit) {
+        return leaseTime > 0 ? unit.toMillis(leaseTime) : leaseTime;
+    }
+
+    /**
+     * 获取锁失败时抛出运行时异常
+     */
+    private static Boolean failIfNotLocked(Boolean isLock) {
+        if (!isLock) {
+            throw new RuntimeException("请求太频繁");
+        }
+        return true;
+    }
 
 }
@@ -12,6 +12,40 @@ public enum MyLockType {
     FAIR_LOCK,            // 公平锁，按照线程等待时间顺序获取锁
     READ_LOCK,            // 读锁，允许多个线程同时获取读锁，但阻止其他线程获取写锁
     WRITE_LOCK,           // 写锁，只允许一个线程获取写锁，阻塞其他所有读写锁请求
+    MULTI_LOCK,           // 联锁，锁名称表达式可以返回集合，按名称排序后一次性获取所有可重入锁
+    LOCAL_RE_ENTRANT_LOCK, // JVM内的可重入锁，不依赖Redis，适合单机部署和测试
+    LOCAL_FAIR_LOCK,      // JVM内的公平锁
+    LOCAL_READ_LOCK,      // JVM内的读锁
+    LOCAL_WRITE_LOCK,     // JVM内的写锁
+    PERMIT_SEMAPHORE,     // 信号量，同一个锁名称最多允许permits个持有者同时执行，许可在租约时间后自动过期
+    RATE_LIMITER,         // 限流器，同一个锁名称每个rateInterval最多加锁rate次，解锁无需归还
 
     ;
+
+    /**
+     * 是否为多key的锁类型，多key的锁名称会被解析为一组名称
+     *
+     * @return 多key锁返回true
+     */
+    public boolean isMultiKey() {
+        return this == MULTI_LOCK;
+    }
+
+    /**
+     * 是否为允许多个持有者同时执行的锁类型，这类锁需要注解上的permits、rate等参数
+     *
+     * @return 信号量和限流器返回true
+     */
+    public boolean isShared() {
+        return this == PERMIT_SEMAPHORE || this == RATE_LIMITER;
+    }
+
+    /**
+     * 是否为JVM内的锁类型，JVM内的锁不需要Redisson客户端
+     *
+     * @return JVM内的锁返回true
+     */
+    public boolean isLocal() {
+        return this == LOCAL_RE_ENTRANT_LOCK || this == LOCAL_FAIR_LOCK || this == LOCAL_READ_LOCK || this == LOCAL_WRITE_LOCK;
+    }
 }
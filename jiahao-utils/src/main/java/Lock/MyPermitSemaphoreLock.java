@@ -0,0 +1,180 @@
+package Lock;
+
+import org.redisson.api.RFuture;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.misc.RedissonPromise;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>信号量锁</big>
+ * <p>把Redisson的可过期信号量适配为RLock，同一个锁名称最多允许permits个持有者同时执行；
+ * 每次加锁获取一个许可，许可id按锁名称和持有者记录，解锁时归还对应的许可，租约时间即许可的过期时间。
+ * 许可必须会过期，否则持有者宕机后许可永远不会归还，加锁时没有指定租约则使用注解上的租约</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyPermitSemaphoreLock extends MyAbstractLock {
+    /**
+     * 持有中的许可id，键为 锁名称:持有者标识，同一个持有者重入时按后进先出归还
+     */
+    private static final Map<String, Deque<String>> HELD_PERMITS = new ConcurrentHashMap<>(256);
+
+    private final RPermitExpirableSemaphore semaphore;
+    /**
+     * 加锁时没有指定租约时使用的租约（毫秒）
+     */
+    private final long defaultLeaseMillis;
+
+    MyPermitSemaphoreLock(RPermitExpirableSemaphore semaphore, long defaultLeaseMillis) {
+        this.semaphore = semaphore;
+        this.defaultLeaseMillis = defaultLeaseMillis;
+    }
+
+    @Override
+    protected boolean tryAcquire(long waitTime, long leaseTime, TimeUnit unit, long threadId) throws InterruptedException {
+        long leaseMillis = leaseMillis(leaseTime, unit);
+        String permitId;
+        if (waitTime < 0) {
+            permitId = semaphore.acquire(leaseMillis, TimeUnit.MILLISECONDS);
+        } else {
+            permitId = semaphore.tryAcquire(unit.toMillis(waitTime), leaseMillis, TimeUnit.MILLISECONDS);
+        }
+        return hold(permitId, threadId);
+    }
+
+    @Override
+    protected void release(long threadId) {
+        semaphore.release(takePermit(threadId));
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long threadId) {
+        long leaseMillis = leaseMillis(leaseTime, unit);
+        RFuture<String> future;
+        if (waitTime < 0) {
+            future = semaphore.acquireAsync(leaseMillis, TimeUnit.MILLISECONDS);
+        } else {
+            future = semaphore.tryAcquireAsync(unit.toMillis(waitTime), leaseMillis, TimeUnit.MILLISECONDS);
+        }
+        RedissonPromise<Boolean> promise = new RedissonPromise<>();
+        future.onComplete((permitId, e) -> {
+            if (e != null) {
+                promise.tryFailure(e);
+                return;
+            }
+            promise.trySuccess(hold(permitId, threadId));
+        });
+        return promise;
+    }
+
+    @Override
+    public RFuture<Void> lockAsync(long leaseTime, TimeUnit unit, long threadId) {
+        RedissonPromise<Void> promise = new RedissonPromise<>();
+        tryLockAsync(-1, leaseTime, unit, threadId).onComplete((locked, e) -> {
+            if (e != null) {
+                promise.tryFailure(e);
+                return;
+            }
+            promise.trySuccess(null);
+        });
+        return promise;
+    }
+
+    @Override
+    public RFuture<Void> unlockAsync(long threadId) {
+        String permitId;
+        try {
+            permitId = takePermit(threadId);
+        } catch (IllegalMonitorStateException e) {
+            RedissonPromise<Void> promise = new RedissonPromise<>();
+            promise.tryFailure(e);
+            return promise;
+        }
+        return semaphore.releaseAsync(permitId);
+    }
+
+    @Override
+    public String getName() {
+        return semaphore.getName();
+    }
+
+    /**
+     * 其他持有者的许可无法强制归还，只能等待许可过期
+     *
+     * @return 始终返回false
+     */
+    @Override
+    public boolean forceUnlock() {
+        return false;
+    }
+
+    @Override
+    public boolean isLocked() {
+        return semaphore.availablePermits() == 0;
+    }
+
+    @Override
+    public boolean isHeldByThread(long threadId) {
+        return HELD_PERMITS.containsKey(holderKey(threadId));
+    }
+
+    @Override
+    public int getHoldCount() {
+        Deque<String> permits = HELD_PERMITS.get(holderKey(currentThreadId()));
+        return permits == null ? 0 : permits.size();
+    }
+
+    @Override
+    public long remainingTimeToLive() {
+        return semaphore.remainTimeToLive();
+    }
+
+    /**
+     * 许可的租约（毫秒），没有指定时使用默认租约
+     */
+    private long leaseMillis(long leaseTime, TimeUnit unit) {
+        return leaseTime > 0 ? unit.toMillis(leaseTime) : defaultLeaseMillis;
+    }
+
+    /**
+     * 记录获取到的许可
+     *
+     * @return 是否获取到许可
+     */
+    private boolean hold(String permitId, long threadId) {
+        if (permitId == null) {
+            return false;
+        }
+        HELD_PERMITS.compute(holderKey(threadId), (key, permits) -> {
+            Deque<String> deque = permits == null ? new ArrayDeque<>(2) : permits;
+            deque.push(permitId);
+            return deque;
+        });
+        return true;
+    }
+
+    /**
+     * 取出持有者最近获取的许可
+     */
+    private String takePermit(long threadId) {
+        String[] permitId = new String[1];
+        HELD_PERMITS.computeIfPresent(holderKey(threadId), (key, permits) -> {
+            permitId[0] = permits.pop();
+            return permits.isEmpty() ? null : permits;
+        });
+        if (permitId[0] == null) {
+            throw new IllegalMonitorStateException("attempt to release permit, not acquired by thread-id: " + threadId);
+        }
+        return permitId[0];
+    }
+
+    private String holderKey(long threadId) {
+        return semaphore.getName() + ":" + threadId;
+    }
+}
@@ -0,0 +1,88 @@
+package Lock;
+
+import org.redisson.api.RFuture;
+import org.redisson.api.RRateLimiter;
+import org.redisson.misc.RedissonPromise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>限流锁</big>
+ * <p>把Redisson的限流器适配为RLock，加锁即获取一个令牌，令牌按速率自动恢复，解锁时不需要归还；
+ * 与互斥锁不同，同一个锁名称可以同时有多个持有者，只限制单位时间内的加锁次数，租约时间没有意义会被忽略</p>
+ *
+ * @author 13684
+ * @date 2024/4/3
+ */
+final class MyRateLimiterLock extends MyAbstractLock {
+    private final RRateLimiter rateLimiter;
+
+    MyRateLimiterLock(RRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean tryAcquire(long waitTime, long leaseTime, TimeUnit unit, long threadId) {
+        if (waitTime < 0) {
+            rateLimiter.acquire();
+            return true;
+        }
+        return rateLimiter.tryAcquire(waitTime, unit);
+    }
+
+    @Override
+    protected void release(long threadId) {
+        // 令牌按速率自动恢复，无需归还
+    }
+
+    @Override
+    public RFuture<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long threadId) {
+        if (waitTime < 0) {
+            RedissonPromise<Boolean> promise = new RedissonPromise<>();
+            rateLimiter.acquireAsync().onComplete((v, e) -> {
+                if (e != null) {
+                    promise.tryFailure(e);
+                    return;
+                }
+                promise.trySuccess(true);
+            });
+            return promise;
+        }
+        return rateLimiter.tryAcquireAsync(waitTime, unit);
+    }
+
+    @Override
+    public RFuture<Void> lockAsync(long leaseTime, TimeUnit unit, long threadId) {
+        return rateLimiter.acquireAsync();
+    }
+
+    @Override
+    public String getName() {
+        return rateLimiter.getName();
+    }
+
+    @Override
+    public boolean forceUnlock() {
+        return false;
+    }
+
+    @Override
+    public boolean isLocked() {
+        return false;
+    }
+
+    @Override
+    public boolean isHeldByThread(long threadId) {
+        return false;
+    }
+
+    @Override
+    public int getHoldCount() {
+        return 0;
+    }
+
+    @Override
+    public long remainingTimeToLive() {
+        return rateLimiter.remainTimeToLive();
+    }
+}
@@ -0,0 +1,61 @@
+package scheduled.annotation;
+
+import scheduled.enums.RetryBackoffEnum;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>任务的重试策略</big>
+ * <p>标注在任务的执行方法上，启动时按taskId注册重试策略，getSupplier没有指定策略时使用；
+ * 没有注册策略的任务使用全局配置的固定间隔</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:00
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ScheduleRetry {
+    /**
+     * 任务id，与getSupplier的taskId一致
+     */
+    String taskId();
+
+    /**
+     * 退避方式
+     */
+    RetryBackoffEnum backoff() default RetryBackoffEnum.Exponential;
+
+    /**
+     * 第一次重试的间隔（去相关抖动时为最小间隔）
+     */
+    long initialInterval() default 1;
+
+    /**
+     * 最大间隔
+     */
+    long maxInterval() default 10;
+
+    /**
+     * 间隔的时间单位
+     */
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * 指数退避每次失败后间隔的倍数
+     */
+    double multiplier() default 2;
+
+    /**
+     * 最大重试次数，小于0时使用全局配置
+     */
+    int maxRetryTimes() default -1;
+
+    /**
+     * 熔断key，共用同一个下游的任务使用同一个key，为空时不熔断
+     */
+    String circuit() default "";
+}
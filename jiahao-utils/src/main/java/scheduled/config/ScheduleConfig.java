@@ -3,8 +3,17 @@ package scheduled.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import scheduled.enums.RetrySchedulerEnum;
+import scheduled.enums.ScheduleCoalesceEnum;
+import scheduled.enums.ScheduleMisfireEnum;
+import scheduled.enums.SchedulePoolEnum;
+import scheduled.enums.ScheduleQueueEnum;
+import scheduled.enums.ScheduleRejectPolicyEnum;
+import scheduled.enums.ScheduleStoreEnum;
 
 import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -34,6 +43,105 @@ public class ScheduleConfig {
     // 定时任务重试最大时间单位
     private TimeUnit maxRetryIntervalUnit;
 
+    // 熔断：同一个熔断key连续失败多少次后暂停该key的所有重试
+    private int circuitFailureThreshold = 5;
+    // 熔断：暂停的时间（毫秒），之后放行一次试探
+    private long circuitOpenMillis = 60_000;
+
+    // 任务分类使用的耗时分位数
+    private double routePercentile = 0.9;
+    // 分位耗时超过该值（毫秒）的任务移到标准线程池
+    private long quickMaxMillis = 10_000;
+    // 分位耗时低于该值（毫秒）的任务移回快速线程池，小于quickMaxMillis，避免任务在两个线程池之间来回切换
+    private long quickReturnMillis = 5_000;
+    // 样本数达到该值后才开始分类，之前按默认（标准线程池）或重启前保存的分类执行
+    private int routeMinSamples = 3;
+
+    // 同一个任务id重复提交时的合并模式，getSupplier没有指定时使用
+    private ScheduleCoalesceEnum coalesce = ScheduleCoalesceEnum.None;
+
+    // 周期任务：触发延迟超过该值（毫秒）视为错过触发
+    private long misfireThresholdMillis = 1_000;
+    // 周期任务：默认的错过触发处理策略
+    private ScheduleMisfireEnum misfire = ScheduleMisfireEnum.FireOnce;
+    // 周期任务：CatchUp策略默认最多补执行的次数
+    private int misfireMaxCatchUp = 3;
+    // 周期任务：默认同时执行的最大次数
+    private int jobMaxConcurrency = 1;
+    // 周期任务：默认的分散窗口（毫秒），同一秒触发的任务按任务id在窗口内错开
+    private long jobSpreadMillis = 5_000;
+
+    // 主动调用：保留的执行记录数，超过后删除最早的记录
+    private int executionHistorySize = 1_000;
+    // 批量执行：默认同时执行的任务数
+    private int batchParallelism = 8;
+    // 批量执行：同时执行的任务数上限，请求中的parallelism不能超过该值
+    private int batchMaxParallelism = 64;
+    // 批量执行：推送进度的连接超时时间（毫秒）
+    private long batchTimeoutMillis = 3_600_000;
+
+    // 监控推送：推送快照的间隔（毫秒）
+    private long metricsStreamIntervalMillis = 1_000;
+    // 监控推送：连接超时时间（毫秒），超时后客户端重新连接
+    private long metricsStreamTimeoutMillis = 1_800_000;
+
+    // 线程池队列，提交任务的线程很多、队列竞争明显时使用分段数组无锁队列
+    private ScheduleQueueEnum queueType = ScheduleQueueEnum.Linked;
+
+    // 是否使用虚拟线程池执行长任务和没有记录的任务，适合阻塞在I/O上的任务（需要JDK21，低版本退化为普通线程）
+    private boolean virtualThreads = false;
+    // 虚拟线程池的最大并发数，运行时可以通过updatePool的maximumPoolSize调整
+    private int virtualConcurrency = 256;
+
+    // 每个线程池在线程和队列都满时的拒绝策略，未配置的线程池使用Block
+    private Map<SchedulePoolEnum, ScheduleRejectPolicyEnum> rejectPolicy = new EnumMap<>(SchedulePoolEnum.class);
+    // Block策略等待队列空位的最长时间（毫秒），超时后拒绝
+    private long rejectBlockTimeoutMillis = 1_000;
+    // CallerRuns策略同时在调用方线程执行的最大任务数，超过后丢弃
+    private int rejectCallerRunsBudget = 2;
+    // Overflow策略的溢出队列容量，溢出队列也满时丢弃
+    private int rejectOverflowCapacity = 10_000;
+
+    // 是否自动调整线程池，按排队时间、队列长度和CPU使用率加性增加、乘性减少
+    private boolean autoSize = false;
+    // 自动调整的采样周期（毫秒）
+    private long autoSizeIntervalMillis = 5_000;
+    // 排队时间p99的目标值（毫秒），超过即认为线程不够
+    private long autoSizeTargetWaitMillis = 200;
+    // CPU使用率超过该值时不再增加线程
+    private double autoSizeCpuHigh = 0.85;
+    // 每次增加的线程数
+    private int autoSizeStep = 1;
+    // 最大线程数的上限
+    private int autoSizeMaxThreads = 64;
+    // 队列容量的上限
+    private int autoSizeMaxQueueCapacity = 10_000;
+
+    // 重试调度器，待重试任务很多（上万）时使用时间轮
+    private RetrySchedulerEnum retryScheduler = RetrySchedulerEnum.Executor;
+    // 时间轮每格的时间（毫秒），即重试时间的精度
+    private long wheelTickMillis = 100;
+    // 时间轮的格数
+    private int wheelSize = 512;
+    // 时间轮执行到期任务的线程数
+    private int wheelWorkerThreads = 2;
+
+    // 重试状态的持久化方式，开启后重启时恢复待重试的任务和任务耗时
+    private ScheduleStoreEnum store = ScheduleStoreEnum.None;
+    // 本地日志文件路径
+    private String journalPath = "schedule/retry.journal";
+    // 本地日志文件大小（MB），写满时压缩
+    private int journalSizeMb = 16;
+    // Redis存储的key前缀，不同应用需要使用不同的前缀
+    private String storeKeyPrefix = "schedule";
+    // Redis存储的节点标识，每个节点只恢复和删除自己的待重试任务，为空时使用主机名
+    private String storeNodeId = "";
+
+    // 集群模式，多个节点通过Redis共享重试队列，同一个任务同时只在一个节点执行
+    private boolean cluster = false;
+    // 集群模式下从重试队列取任务的线程数
+    private int clusterConsumerThreads = 2;
+
     @PostConstruct
     public void init() {
         for (TimeUnit unit : TimeUnit.values()) {
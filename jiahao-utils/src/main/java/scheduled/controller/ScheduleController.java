@@ -2,19 +2,35 @@ package scheduled.controller;
 
 import cn.hutool.core.util.ObjectUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeansException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
-import scheduled.annotation.InitiativeExecute;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleBatchDTO;
+import scheduled.domain.dto.ScheduleExecutionDTO;
 import scheduled.domain.dto.SchedulePoolDTO;
+import scheduled.domain.dto.ScheduleJobStatusDTO;
+import scheduled.domain.dto.ScheduleMetricsDTO;
+import scheduled.domain.dto.SchedulePoolDecisionDTO;
 import scheduled.domain.dto.ScheduleTaskDTO;
+import scheduled.enums.QueueShrinkPolicyEnum;
 import scheduled.enums.SchedulePoolEnum;
-import scheduled.util.ResizeLinkedBlockingQueue;
+import scheduled.util.InitiativeTaskRegistry;
+import scheduled.util.MonitoredThreadPoolExecutor;
+import scheduled.util.OverflowRejected;
+import scheduled.util.ResizableBlockingQueue;
+import scheduled.util.ScheduleMetricsCollector;
+import scheduled.util.SchedulePoolAutoSizer;
+import scheduled.util.ScheduledUtil;
+import scheduled.util.ShedRejected;
 
-import java.lang.reflect.Method;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <big>任务控制器</big>
@@ -26,43 +42,79 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 @RestController
 @RequestMapping("/schedule")
-public class ScheduleController implements ApplicationContextAware {
-    private ApplicationContext applicationContext;
+public class ScheduleController {
+    @Resource
+    private InitiativeTaskRegistry initiativeTaskRegistry;
+    @Resource
+    private SchedulePoolAutoSizer schedulePoolAutoSizer;
+    @Resource
+    private ScheduledUtil scheduledUtil;
+    @Resource
+    private ScheduleConfig scheduleConfig;
+    @Resource
+    private ScheduleMetricsCollector scheduleMetricsCollector;
 
 
     /**
-     * 通过反射，主动调用定时任务(适用于单体架构，无分布式调度框架)
+     * 主动调用定时任务(适用于单体架构，无分布式调度框架)，按启动时建立的索引异步执行
      * 需要进行鉴权，根据ak，或者其他方法进行鉴权
      *
      * @param scheduleTaskDTO   调度任务
-     * @return  调用结果
+     * @return  执行记录，根据执行id查询执行状态
      */
     @PostMapping("/execute")
-    public String executeSchedule(@RequestBody ScheduleTaskDTO scheduleTaskDTO) {
-        try {
-            // 获取类
-            Class<?> aClass = Class.forName(scheduleTaskDTO.getClassName());
-            if (!aClass.isAnnotationPresent(InitiativeExecute.class)) {
-                return "Class not annotated with @InitiativeExecute";
-            }
+    public ScheduleExecutionDTO executeSchedule(@RequestBody ScheduleTaskDTO scheduleTaskDTO) {
+        ScheduleExecutionDTO execution = initiativeTaskRegistry.submit(scheduleTaskDTO.getClassName(), scheduleTaskDTO.getMethodName());
+        log.info("Schedule execute submitted! ScheduleTaskDto={}, execution={}", scheduleTaskDTO, execution);
+        return execution;
+    }
 
-            // 获取方法
-            Method method = aClass.getDeclaredMethod(scheduleTaskDTO.getMethodName());
+    /**
+     * 查询主动调用的执行状态
+     *
+     * @param executionId 执行id
+     * @return 执行记录，不存在或者已经被清理时为空
+     */
+    @GetMapping("/execution")
+    public ScheduleExecutionDTO getExecution(@RequestParam String executionId) {
+        return initiativeTaskRegistry.getExecution(executionId);
+    }
 
-            // 获取访问权限
-            method.setAccessible(true);
+    /**
+     * 批量执行任务，按parallelism限制同时执行的任务数，每个任务结束后推送一次结果（item事件），全部结束后推送汇总（done事件）
+     * 需要进行鉴权，根据ak，或者其他方法进行鉴权
+     *
+     * @param scheduleBatchDTO 批量任务
+     * @return 推送进度的连接
+     */
+    @PostMapping(value = "/executeBatch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter executeBatch(@RequestBody ScheduleBatchDTO scheduleBatchDTO) {
+        SseEmitter emitter = new SseEmitter(scheduleConfig.getBatchTimeoutMillis());
+        AtomicBoolean closed = new AtomicBoolean();
+        // 连接断开或者超时后不再提交剩余的任务
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+        emitter.onCompletion(() -> closed.set(true));
+        initiativeTaskRegistry.submitBatch(scheduleBatchDTO,
+                item -> send(emitter, closed, "item", item),
+                summary -> {
+                    send(emitter, closed, "done", summary);
+                    emitter.complete();
+                },
+                closed::get);
+        return emitter;
+    }
 
-            // 获取实例
-            Object bean = applicationContext.getBean(aClass);
-            // 执行实例方法
-            method.invoke(bean);
-            log.info("Schedule execute success! ScheduleTaskDto={}", scheduleTaskDTO);
-        } catch (Exception e) {
-            log.error("Schedule execute failed! ScheduleTaskDto={}", scheduleTaskDTO);
-            log.error("Exception ", e);
-            return "exception";
+    private static void send(SseEmitter emitter, AtomicBoolean closed, String name, Object data) {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            closed.set(true);
+            log.warn("Schedule batch progress not sent, connection closed: {}", e.getMessage());
         }
-        return "success";
     }
 
     @PutMapping("/updatePool")
@@ -87,19 +139,26 @@ public class ScheduleController implements ApplicationContextAware {
             }
 
             // 设置队列容量大小
-            ResizeLinkedBlockingQueue<Runnable> queue = (ResizeLinkedBlockingQueue<Runnable>) threadPoolExecutor.getQueue();
+            ResizableBlockingQueue<Runnable> queue = (ResizableBlockingQueue<Runnable>) threadPoolExecutor.getQueue();
             if (ObjectUtil.isNotEmpty(schedulePoolDTO.getQueueCapacity())) {
-                queue.setCapacity(schedulePoolDTO.getQueueCapacity());
+                QueueShrinkPolicyEnum shrinkPolicy = ObjectUtil.defaultIfNull(schedulePoolDTO.getQueueShrinkPolicy(), QueueShrinkPolicyEnum.Keep);
+                List<Runnable> drained = queue.setCapacity(schedulePoolDTO.getQueueCapacity(), shrinkPolicy);
+                // 取出的任务在后台按被拒绝处理，不阻塞请求
+                if (!drained.isEmpty()) {
+                    log.warn("Queue shrink drained {} tasks, type={}", drained.size(), type);
+                    ScheduledUtil.handBackDrained(threadPoolExecutor, drained);
+                }
             }
 
             log.info("Update pool success! type={}, schedulePoolDTO={}", type, schedulePoolDTO);
             StringBuilder sb = new StringBuilder();
             for (SchedulePoolEnum value : SchedulePoolEnum.values()) {
-                ResizeLinkedBlockingQueue<Runnable> tempQueue = (ResizeLinkedBlockingQueue<Runnable>) value.getThreadPoolExecutor().getQueue();
+                ResizableBlockingQueue<Runnable> tempQueue = (ResizableBlockingQueue<Runnable>) value.getThreadPoolExecutor().getQueue();
                 sb.append(value.getDesc()).append(": corePoolSize=").append(value.getThreadPoolExecutor().getCorePoolSize())
                         .append(", maximumPoolSize=").append(value.getThreadPoolExecutor().getMaximumPoolSize())
                         .append(", keepAliveTime=").append(value.getThreadPoolExecutor().getKeepAliveTime(TimeUnit.SECONDS)).append("s")
                         .append(", queueCapacity=").append(tempQueue.getCapacity())
+                        .append(", effectiveQueueCapacity=").append(tempQueue.getEffectiveCapacity())
                         .append("\n");
             }
             log.info("All pool info: \n{}", sb);
@@ -115,11 +174,13 @@ public class ScheduleController implements ApplicationContextAware {
     public String getPool(@RequestParam SchedulePoolEnum type) {
         try {
             ThreadPoolExecutor threadPoolExecutor = type.getThreadPoolExecutor();
-            ResizeLinkedBlockingQueue<Runnable> queue = (ResizeLinkedBlockingQueue<Runnable>) threadPoolExecutor.getQueue();
+            ResizableBlockingQueue<Runnable> queue = (ResizableBlockingQueue<Runnable>) threadPoolExecutor.getQueue();
             return type.getDesc() + ": corePoolSize=" + threadPoolExecutor.getCorePoolSize() +
                     ", maximumPoolSize=" + threadPoolExecutor.getMaximumPoolSize() +
                     ", keepAliveTime=" + threadPoolExecutor.getKeepAliveTime(TimeUnit.SECONDS) +
-                    ", queueCapacity=" + queue.getCapacity();
+                    ", queueCapacity=" + queue.getCapacity() +
+                    ", effectiveQueueCapacity=" + queue.getEffectiveCapacity() +
+                    ", queueSize=" + queue.size() + rejectInfo(threadPoolExecutor);
 
         }catch (Exception e) {
             log.error("Get pool failed! type={}", type);
@@ -128,11 +189,73 @@ public class ScheduleController implements ApplicationContextAware {
         }
     }
 
+    /**
+     * 拒绝策略和拒绝次数
+     */
+    private static String rejectInfo(ThreadPoolExecutor threadPoolExecutor) {
+        if (!(threadPoolExecutor instanceof MonitoredThreadPoolExecutor)) {
+            return ", rejectPolicy=" + threadPoolExecutor.getRejectedExecutionHandler().getClass().getSimpleName();
+        }
+        MonitoredThreadPoolExecutor executor = (MonitoredThreadPoolExecutor) threadPoolExecutor;
+        RejectedExecutionHandler handler = executor.getDelegateRejectedExecutionHandler();
+        StringBuilder sb = new StringBuilder(", rejectPolicy=").append(handler.getClass().getSimpleName())
+                .append(", rejected=").append(executor.getRejectedCount());
+        if (handler instanceof ShedRejected) {
+            sb.append(", shed=").append(((ShedRejected) handler).getShedCount());
+        } else if (handler instanceof OverflowRejected) {
+            sb.append(", overflow=").append(((OverflowRejected) handler).getOverflowSize());
+        }
+        return sb.toString();
+    }
 
+    /**
+     * 查看线程池自动调整的记录
+     *
+     * @return 最近的调整记录
+     */
+    @GetMapping("/autoSize")
+    public List<SchedulePoolDecisionDTO> getAutoSizeDecisions() {
+        return schedulePoolAutoSizer.getDecisions();
+    }
 
+    /**
+     * 查看线程池、任务耗时和待重试任务的监控快照
+     *
+     * @return 监控快照
+     */
+    @GetMapping("/metrics")
+    public ScheduleMetricsDTO getMetrics() {
+        return scheduleMetricsCollector.snapshot();
+    }
 
-    @Override
-    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
-        this.applicationContext = applicationContext;
+    /**
+     * 订阅监控快照，按配置的间隔推送（metrics事件）
+     *
+     * @return 推送快照的连接
+     */
+    @GetMapping(value = "/metrics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMetrics() {
+        return scheduleMetricsCollector.subscribe();
+    }
+
+    /**
+     * 查看周期任务的运行状态
+     *
+     * @return 所有周期任务的状态
+     */
+    @GetMapping("/jobs")
+    public List<ScheduleJobStatusDTO> getJobs() {
+        return scheduledUtil.getJobStatus();
+    }
+
+    /**
+     * 取消周期任务
+     *
+     * @param jobId 任务id
+     * @return 调用结果
+     */
+    @DeleteMapping("/job")
+    public String cancelJob(@RequestParam String jobId) {
+        return scheduledUtil.cancelJob(jobId) ? "success" : "not found";
     }
 }
@@ -0,0 +1,34 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * <big>批量执行的dto对象</big>
+ * <p>tasks中每个无参方法执行一次；className和methodName指定的单参数方法对args中每个参数执行一次，两种可以同时使用</p>
+ *
+ * @author 13684
+ * @data 2024/8/6 上午9:30
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleBatchDTO {
+    // 无参任务列表
+    private List<ScheduleTaskDTO> tasks;
+    // 单参数任务的全类名
+    private String className;
+    // 单参数任务的方法名
+    private String methodName;
+    // 单参数任务的参数列表，按方法的参数类型转换
+    private List<Object> args;
+    // 同时执行的最大任务数，为空时使用配置中的默认值
+    private Integer parallelism;
+    // 访问id
+    private String accessId;
+    // 访问key（鉴权使用）
+    private String accessKey;
+}
@@ -0,0 +1,37 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import scheduled.enums.ScheduleExecutionStatusEnum;
+
+/**
+ * <big>批量执行中单个任务结果的dto对象</big>
+ * <p>每个任务结束后推送一次</p>
+ *
+ * @author 13684
+ * @data 2024/8/6 上午9:30
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleBatchItemDTO {
+    // 任务在批量中的序号
+    private int index;
+    // 任务全类名
+    private String className;
+    // 任务方法名
+    private String methodName;
+    // 参数，无参任务为空
+    private Object arg;
+    // 执行状态
+    private ScheduleExecutionStatusEnum status;
+    // 执行耗时（毫秒）
+    private long durationMillis;
+    // 未执行或者执行异常的原因
+    private String message;
+    // 已结束的任务数
+    private int finished;
+    // 任务总数
+    private int total;
+}
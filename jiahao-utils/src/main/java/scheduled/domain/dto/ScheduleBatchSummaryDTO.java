@@ -0,0 +1,28 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <big>批量执行汇总的dto对象</big>
+ * <p>所有任务结束后推送</p>
+ *
+ * @author 13684
+ * @data 2024/8/6 上午9:30
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleBatchSummaryDTO {
+    // 任务总数
+    private int total;
+    // 执行成功数
+    private int success;
+    // 执行异常数
+    private int failed;
+    // 未执行数（任务不存在或者线程池拒绝）
+    private int rejected;
+    // 总耗时（毫秒）
+    private long elapsedMillis;
+}
@@ -0,0 +1,26 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <big>集群重试任务的dto对象</big>
+ * <p>集群模式下放入Redis延迟队列的重试消息</p>
+ *
+ * @author 13684
+ * @data 2024/7/24 下午2:20
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleClusterTaskDTO {
+    // 任务id
+    private String taskId;
+    // 已经重试的次数
+    private int retryTimes;
+    // 最大重试时间（毫秒时间戳）
+    private long deadlineTime;
+    // 因为本节点没有注册执行方法而转交给其他节点的次数
+    private int hops;
+}
@@ -0,0 +1,37 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import scheduled.enums.ScheduleExecutionStatusEnum;
+
+import java.time.LocalDateTime;
+
+/**
+ * <big>主动调用执行记录的dto对象</big>
+ * <p>主动调用异步执行，根据执行id查询执行状态</p>
+ *
+ * @author 13684
+ * @data 2024/8/5 上午10:20
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleExecutionDTO {
+    // 执行id
+    private String executionId;
+    // 任务全类名
+    private String className;
+    // 任务方法名
+    private String methodName;
+    // 执行状态
+    private ScheduleExecutionStatusEnum status;
+    // 提交时间
+    private LocalDateTime submitTime;
+    // 开始执行时间
+    private LocalDateTime startTime;
+    // 执行结束时间
+    private LocalDateTime finishTime;
+    // 未执行或者执行异常的原因
+    private String message;
+}
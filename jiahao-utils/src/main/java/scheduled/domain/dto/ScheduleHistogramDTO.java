@@ -0,0 +1,29 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * <big>耗时分布的DTO对象</big>
+ * <p>单位毫秒，没有样本时分位数为-1</p>
+ *
+ * @author 13684
+ * @data 2024/8/7 上午10:10
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleHistogramDTO {
+    // 有效样本数（衰减后）
+    private long count;
+    private long p50;
+    private long p90;
+    private long p99;
+    // 记录过的最大值
+    private long max;
+    // 非空桶：桶的上界（包含）-> 计数
+    private Map<Long, Long> buckets;
+}
@@ -0,0 +1,33 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import scheduled.enums.ScheduleMisfireEnum;
+
+/**
+ * <big>周期任务定义的DTO对象</big>
+ * <p>cron和fixedRateMillis二选一，其余为空时使用配置中的默认值</p>
+ *
+ * @author 13684
+ * @data 2024/8/2 上午9:40
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleJobDTO {
+    // 任务id，同时用于选择线程池
+    private String jobId;
+    // cron表达式（秒 分 时 日 月 周）
+    private String cron;
+    // 固定频率（毫秒）
+    private Long fixedRateMillis;
+    // 错过触发的处理策略
+    private ScheduleMisfireEnum misfire;
+    // CatchUp策略最多补执行的次数
+    private Integer maxCatchUp;
+    // 同时执行的最大次数
+    private Integer maxConcurrency;
+    // 分散窗口（毫秒），按任务id的哈希在窗口内错开触发时间，0表示不错开
+    private Long spreadMillis;
+}
@@ -0,0 +1,32 @@
+package scheduled.domain.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * <big>周期任务运行状态的DTO对象</big>
+ * <p></p>
+ *
+ * @author 13684
+ * @data 2024/8/2 上午9:40
+ */
+@Data
+public class ScheduleJobStatusDTO {
+    // 任务定义
+    private ScheduleJobDTO job;
+    // 按任务id错开的触发偏移（毫秒）
+    private long offsetMillis;
+    // 下一次触发时间
+    private LocalDateTime nextFireTime;
+    // 正在执行的次数
+    private int running;
+    // 等待补执行的次数
+    private int pending;
+    // 已执行次数
+    private long executed;
+    // 错过的触发次数
+    private long misfired;
+    // 按策略丢弃或者被线程池拒绝的次数
+    private long dropped;
+}
@@ -0,0 +1,27 @@
+package scheduled.domain.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * <big>任务监控快照的DTO对象</big>
+ * <p>包含所有线程池、任务耗时和待重试任务</p>
+ *
+ * @author 13684
+ * @data 2024/8/7 上午10:10
+ */
+@Data
+public class ScheduleMetricsDTO {
+    // 快照时间
+    private LocalDateTime time;
+    // 线程池
+    private List<SchedulePoolMetricsDTO> pools;
+    // 任务耗时
+    private List<ScheduleTaskMetricsDTO> tasks;
+    // 本节点待重试的任务数
+    private int retryBacklog;
+    // 本节点待重试的任务id（最多返回部分）
+    private List<String> retryTasks;
+}
@@ -3,6 +3,7 @@ package scheduled.domain.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import scheduled.enums.QueueShrinkPolicyEnum;
 
 import java.util.concurrent.TimeUnit;
 
@@ -23,6 +24,8 @@ public class SchedulePoolDTO {
     private int maximumPoolSize;
     // 队列容量大小
     private int queueCapacity;
+    // 队列容量调小到当前长度以下时的处理方式，默认保留超出的任务
+    private QueueShrinkPolicyEnum queueShrinkPolicy;
     // 线程空闲时间
     private int keepAliveTime;
     // 线程空闲时间单位
@@ -0,0 +1,43 @@
+package scheduled.domain.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * <big>线程池自动调整记录的DTO对象</big>
+ * <p>记录每次自动调整时的采样指标和调整前后的参数</p>
+ *
+ * @author 13684
+ * @data 2024/7/26 上午10:15
+ */
+@Data
+public class SchedulePoolDecisionDTO {
+    // 调整时间
+    private LocalDateTime time;
+    // 线程池
+    private String pool;
+    // 调整原因
+    private String reason;
+    // 采样：每秒提交数
+    private double arrivalRate;
+    // 采样：排队时间p99（毫秒）
+    private long waitP99Millis;
+    // 采样：平均执行时间（毫秒）
+    private double runMeanMillis;
+    // 采样：队列中的任务数
+    private int queueSize;
+    // 采样：拒绝次数
+    private long rejected;
+    // 采样：进程CPU使用率
+    private double cpuLoad;
+    // 调整前后的核心线程数
+    private int oldCorePoolSize;
+    private int newCorePoolSize;
+    // 调整前后的最大线程数
+    private int oldMaximumPoolSize;
+    private int newMaximumPoolSize;
+    // 调整前后的队列容量
+    private int oldQueueCapacity;
+    private int newQueueCapacity;
+}
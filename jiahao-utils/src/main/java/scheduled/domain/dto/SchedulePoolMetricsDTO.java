@@ -0,0 +1,46 @@
+package scheduled.domain.dto;
+
+import lombok.Data;
+
+/**
+ * <big>线程池监控的DTO对象</big>
+ * <p></p>
+ *
+ * @author 13684
+ * @data 2024/8/7 上午10:10
+ */
+@Data
+public class SchedulePoolMetricsDTO {
+    // 线程池
+    private String pool;
+    // 线程池描述
+    private String desc;
+    // 核心线程数
+    private int corePoolSize;
+    // 最大线程数
+    private int maximumPoolSize;
+    // 当前线程数
+    private int poolSize;
+    // 执行中的线程数
+    private int activeCount;
+    // 历史最大线程数
+    private int largestPoolSize;
+    // 队列中的任务数
+    private int queueSize;
+    // 队列容量
+    private int queueCapacity;
+    // 实际生效的队列容量
+    private int effectiveQueueCapacity;
+    // 启动以来的提交数
+    private long submitted;
+    // 启动以来的完成数
+    private long completed;
+    // 启动以来的拒绝数
+    private long rejected;
+    // 拒绝策略
+    private String rejectPolicy;
+    // 排队时间分布
+    private ScheduleHistogramDTO waitMillis;
+    // 执行时间分布
+    private ScheduleHistogramDTO runMillis;
+}
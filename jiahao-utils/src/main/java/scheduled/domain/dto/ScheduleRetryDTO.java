@@ -0,0 +1,28 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * <big>待重试任务的dto对象</big>
+ * <p>持久化时保存的重试状态，重启后根据它恢复重试</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleRetryDTO implements Serializable {
+    // 任务id
+    private String taskId;
+    // 已经重试的次数
+    private int retryTimes;
+    // 最大重试时间（毫秒时间戳）
+    private long deadlineTime;
+    // 下一次重试的时间（毫秒时间戳）
+    private long nextRunTime;
+}
@@ -0,0 +1,24 @@
+package scheduled.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <big>任务耗时监控的DTO对象</big>
+ * <p></p>
+ *
+ * @author 13684
+ * @data 2024/8/7 上午10:10
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleTaskMetricsDTO {
+    // 任务id
+    private String taskId;
+    // 是否走快速线程池
+    private boolean quick;
+    // 执行时间分布
+    private ScheduleHistogramDTO runMillis;
+}
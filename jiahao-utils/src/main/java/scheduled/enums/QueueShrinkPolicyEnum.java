@@ -0,0 +1,34 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>队列缩容策略枚举类</big>
+ * <p>队列容量调小到当前长度以下时，超出部分的处理方式</p>
+ *
+ * @author 13684
+ * @data 2024/7/31 上午9:50
+ */
+public enum QueueShrinkPolicyEnum implements BaseEnum {
+    Keep(0, "保留超出的元素，队列长度降到新容量以下后才能继续放入"),
+    DrainToLimit(1, "立即取出最早放入的超出元素，交给调用方处理");
+    ;
+    final Integer value;
+    final String desc;
+
+    QueueShrinkPolicyEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -0,0 +1,35 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>重试退避方式枚举类</big>
+ * <p>决定每次重试失败后到下一次重试的间隔</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:00
+ */
+public enum RetryBackoffEnum implements BaseEnum {
+    Fixed(0, "固定间隔"),
+    Exponential(1, "指数退避"),
+    DecorrelatedJitter(2, "去相关抖动");
+    ;
+    final Integer value;
+    final String desc;
+
+    RetryBackoffEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -0,0 +1,34 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>重试调度器枚举类</big>
+ * <p>配置 schedule.retry-scheduler 选择失败任务的重试调度方式</p>
+ *
+ * @author 13684
+ * @data 2024/7/22 下午3:10
+ */
+public enum RetrySchedulerEnum implements BaseEnum {
+    Executor(0, "定时线程池"),
+    TimingWheel(1, "时间轮");
+    ;
+    final Integer value;
+    final String desc;
+
+    RetrySchedulerEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -0,0 +1,35 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>任务合并模式枚举类</big>
+ * <p>同一个任务id在上一次执行还在排队或者运行时再次提交的处理方式</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:05
+ */
+public enum ScheduleCoalesceEnum implements BaseEnum {
+    None(0, "不合并，每次提交都完整执行一次"),
+    Share(1, "合并到正在执行的任务，共享它的结果"),
+    ShareAndRerun(2, "合并到正在执行的任务，执行完成后再执行一次并共享这一次的结果");
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleCoalesceEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
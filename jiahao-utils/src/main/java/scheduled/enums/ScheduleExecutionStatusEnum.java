@@ -0,0 +1,37 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>主动调用的执行状态枚举类</big>
+ * <p></p>
+ *
+ * @author 13684
+ * @data 2024/8/5 上午10:20
+ */
+public enum ScheduleExecutionStatusEnum implements BaseEnum {
+    Queued(0, "已提交，等待执行"),
+    Running(1, "执行中"),
+    Success(2, "执行成功"),
+    Failed(3, "执行异常"),
+    Rejected(4, "未执行（任务不存在或者线程池拒绝）");
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleExecutionStatusEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
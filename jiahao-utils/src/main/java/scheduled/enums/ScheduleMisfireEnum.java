@@ -0,0 +1,35 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>周期任务错过触发的处理策略枚举类</big>
+ * <p>调度线程延迟超过阈值，或者任务达到并发上限而没有执行时，错过的触发按该策略处理</p>
+ *
+ * @author 13684
+ * @data 2024/8/2 上午9:40
+ */
+public enum ScheduleMisfireEnum implements BaseEnum {
+    Skip(0, "跳过错过的触发，等待下一次触发"),
+    FireOnce(1, "错过多次也只补执行一次"),
+    CatchUp(2, "逐次补执行错过的触发，不超过补执行上限");
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleMisfireEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -1,34 +1,38 @@
 package scheduled.enums;
 
 import base.BaseEnum;
-import lombok.Getter;
 import scheduled.util.ScheduledUtil;
 
 
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
 
 /**
  * <big>线程池枚举类</big>
- * <p>用来存储项目中所有的线程池</p>
+ * <p>用来存储项目中所有的线程池，线程池启动时可能按配置重建，每次获取都返回当前的线程池</p>
  *
  * @author 13684
  * @data 2024/7/15 上午10:30
  */
 public enum SchedulePoolEnum implements BaseEnum {
-    QuickHandler(0, "快速线程池", ScheduledUtil.getQuickHandlerExecutor()),
-    ThreadPool(1, "标准线程池", ScheduledUtil.getThreadPoolExecutor());
+    QuickHandler(0, "快速线程池", ScheduledUtil::getQuickHandlerExecutor),
+    ThreadPool(1, "标准线程池", ScheduledUtil::getThreadPoolExecutor),
+    VirtualHandler(2, "虚拟线程池", ScheduledUtil::getVirtualHandlerExecutor);
     ;
     final Integer value;
     final String desc;
-    @Getter
-    final ThreadPoolExecutor threadPoolExecutor;
+    final Supplier<ThreadPoolExecutor> threadPoolExecutor;
 
-    SchedulePoolEnum(Integer value, String desc, ThreadPoolExecutor threadPoolExecutor) {
+    SchedulePoolEnum(Integer value, String desc, Supplier<ThreadPoolExecutor> threadPoolExecutor) {
         this.value = value;
         this.desc = desc;
         this.threadPoolExecutor = threadPoolExecutor;
     }
 
+    public ThreadPoolExecutor getThreadPoolExecutor() {
+        return threadPoolExecutor.get();
+    }
+
     @Override
     public int getValue() {
         return value;
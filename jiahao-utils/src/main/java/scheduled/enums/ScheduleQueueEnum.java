@@ -0,0 +1,34 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>线程池队列枚举类</big>
+ * <p>配置 schedule.queue-type 选择线程池使用的队列，两种队列都支持运行时调整容量</p>
+ *
+ * @author 13684
+ * @data 2024/7/30 上午10:20
+ */
+public enum ScheduleQueueEnum implements BaseEnum {
+    Linked(0, "双锁链表队列"),
+    SegmentedArray(1, "分段数组无锁队列");
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleQueueEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -0,0 +1,37 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>线程池拒绝策略枚举类</big>
+ * <p>配置 schedule.reject-policy.[线程池] 为每个线程池选择线程和队列都满时的处理方式</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+public enum ScheduleRejectPolicyEnum implements BaseEnum {
+    Block(0, "阻塞等待队列空位，超时后拒绝"),
+    CallerRuns(1, "在提交任务的线程中执行，超过并发预算后丢弃"),
+    Spill(2, "转到另一个线程池执行"),
+    Overflow(3, "放入溢出队列，后台线程在队列有空位时放回，任务id会持久化"),
+    Shed(4, "直接丢弃并计数，抛出拒绝异常通知调用方");
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleRejectPolicyEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -0,0 +1,35 @@
+package scheduled.enums;
+
+import base.BaseEnum;
+
+/**
+ * <big>重试状态持久化方式枚举类</big>
+ * <p>配置 schedule.store 选择待重试任务和任务耗时的持久化方式</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+public enum ScheduleStoreEnum implements BaseEnum {
+    None(0, "不持久化"),
+    Journal(1, "本地日志文件"),
+    Redis(2, "Redis"),
+    ;
+    final Integer value;
+    final String desc;
+
+    ScheduleStoreEnum(Integer value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String getDesc() {
+        return desc;
+    }
+
+}
@@ -3,9 +3,13 @@ package scheduled.example;
 
 import org.springframework.stereotype.Component;
 import scheduled.annotation.InitiativeExecute;
+import scheduled.annotation.ScheduleRetry;
+import scheduled.enums.RetryBackoffEnum;
 import scheduled.util.ScheduledUtil;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <big>测试任务类</big>
@@ -19,10 +23,21 @@ import javax.annotation.Resource;
 public class TestTask {
     @Resource
     ScheduledUtil scheduledUtil;
+
+    @PostConstruct
+    public void init() {
+        // 注册执行方法，重启后可以继续未完成的重试
+        scheduledUtil.registerTask("TestTask.test", this::doTest);
+    }
+
     public void test() {
-        scheduledUtil.getSupplier("TestTask.test", () -> {
-            System.out.println("test");
-            return false;
-        });
+        scheduledUtil.getSupplier("TestTask.test", this::doTest);
+    }
+
+    @ScheduleRetry(taskId = "TestTask.test", backoff = RetryBackoffEnum.DecorrelatedJitter, initialInterval = 10,
+            maxInterval = 600, unit = TimeUnit.SECONDS)
+    private Boolean doTest() {
+        System.out.println("test");
+        return false;
     }
 }
@@ -0,0 +1,327 @@
+package scheduled.store;
+
+import lombok.extern.slf4j.Slf4j;
+import scheduled.domain.dto.ScheduleRetryDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * <big>基于本地日志文件的存储</big>
+ * <p>只追加写入，文件通过内存映射写入，每次写入只是一次内存拷贝，进程崩溃时由操作系统负责落盘。
+ * 每条记录的格式为 [长度][CRC32][类型][内容]，读取时遇到长度为0或者校验失败的记录即认为到达末尾（写到一半的记录被丢弃）。
+ * 文件写满时把当前有效的状态重写到新文件后原子替换（压缩），有效状态超过文件大小时文件大小翻倍，
+ * 最大不超过单个内存映射的上限（2GB）</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+@Slf4j
+public class JournalScheduleStore implements ScheduleStore {
+    private static final byte TYPE_SAVE_RETRY = 1;
+    private static final byte TYPE_REMOVE_RETRY = 2;
+    private static final byte TYPE_TASK_TIME = 3;
+    /**
+     * 记录头：长度 + CRC32
+     */
+    private static final int HEADER_SIZE = 8;
+    /**
+     * 文件大小上限，单个内存映射最大为Integer.MAX_VALUE
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final Path path;
+    private long fileSize;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /**
+     * 当前有效的状态，压缩时重写
+     */
+    private final Map<String, ScheduleRetryDTO> retries = new LinkedHashMap<>();
+    private final Map<String, Long> taskTimes = new HashMap<>();
+
+    /**
+     * @param path     日志文件路径
+     * @param fileSize 日志文件大小（字节）
+     */
+    public JournalScheduleStore(Path path, long fileSize) {
+        this.path = path;
+        this.fileSize = Math.min(Math.max(fileSize, 4096), MAX_FILE_SIZE);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            if (Files.exists(path)) {
+                this.fileSize = Math.min(Math.max(this.fileSize, Files.size(path)), MAX_FILE_SIZE);
+            }
+            map(path);
+            replay();
+            // 启动时压缩一次，清理已删除的记录
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("open schedule journal failed: " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void saveRetry(ScheduleRetryDTO retry) {
+        retries.put(retry.getTaskId(), retry);
+        append(TYPE_SAVE_RETRY, encodeRetry(retry));
+    }
+
+    @Override
+    public synchronized void removeRetry(String taskId) {
+        if (retries.remove(taskId) != null) {
+            append(TYPE_REMOVE_RETRY, encodeString(taskId));
+        }
+    }
+
+    @Override
+    public synchronized List<ScheduleRetryDTO> loadRetries() {
+        List<ScheduleRetryDTO> list = new ArrayList<>(retries.values());
+        list.sort(Comparator.comparingLong(ScheduleRetryDTO::getNextRunTime));
+        return list;
+    }
+
+    @Override
+    public synchronized void saveTaskTime(String taskId, long millis) {
+        Long previous = taskTimes.put(taskId, millis);
+        // 耗时没有变化时不重复写入
+        if (previous == null || previous != millis) {
+            ByteBuffer payload = ByteBuffer.allocate(stringSize(taskId) + 8);
+            putString(payload, taskId);
+            payload.putLong(millis);
+            append(TYPE_TASK_TIME, payload.array());
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Long> loadTaskTimes() {
+        return new HashMap<>(taskTimes);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("close schedule journal failed: {}", path, e);
+        }
+    }
+
+    /**
+     * 追加一条记录，空间不足时先压缩
+     */
+    private void append(byte type, byte[] payload) {
+        int length = 1 + payload.length;
+        if (buffer.remaining() < HEADER_SIZE + length + HEADER_SIZE) {
+            try {
+                compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException("compact schedule journal failed: " + path, e);
+            }
+            if (buffer.remaining() < HEADER_SIZE + length + HEADER_SIZE) {
+                throw new UncheckedIOException(new IOException("schedule journal is full: " + path));
+            }
+        }
+        writeRecord(buffer, type, payload);
+    }
+
+    private static void writeRecord(ByteBuffer target, byte type, byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+        int start = target.position();
+        // 先写内容再写长度，长度不为0即表示记录完整
+        target.position(start + HEADER_SIZE);
+        target.put(type).put(payload);
+        int end = target.position();
+        target.putInt(start + 4, (int) crc32.getValue());
+        target.putInt(start, 1 + payload.length);
+        target.position(end);
+    }
+
+    /**
+     * 读取日志，恢复有效状态，写入位置停在最后一条完整记录之后
+     */
+    private void replay() {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            CRC32 crc32 = new CRC32();
+            crc32.update(record);
+            if ((int) crc32.getValue() != crc) {
+                log.warn("schedule journal {} has a broken record at {}, ignore the rest", path, start);
+                buffer.position(start);
+                break;
+            }
+            apply(ByteBuffer.wrap(record));
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case TYPE_SAVE_RETRY:
+                ScheduleRetryDTO retry = new ScheduleRetryDTO(getString(record), record.getInt(), record.getLong(), record.getLong());
+                retries.put(retry.getTaskId(), retry);
+                break;
+            case TYPE_REMOVE_RETRY:
+                retries.remove(getString(record));
+                break;
+            case TYPE_TASK_TIME:
+                taskTimes.put(getString(record), record.getLong());
+                break;
+            default:
+                log.warn("schedule journal {} has an unknown record type {}", path, type);
+        }
+    }
+
+    /**
+     * 把有效状态写到临时文件后原子替换原文件
+     */
+    private void compact() throws IOException {
+        List<byte[]> records = new ArrayList<>(retries.size() + taskTimes.size());
+        long required = HEADER_SIZE;
+        for (ScheduleRetryDTO retry : retries.values()) {
+            byte[] payload = encodeRetry(retry);
+            records.add(payload);
+            required += HEADER_SIZE + 1 + payload.length;
+        }
+        int retryCount = records.size();
+        for (Map.Entry<String, Long> entry : taskTimes.entrySet()) {
+            ByteBuffer payload = ByteBuffer.allocate(stringSize(entry.getKey()) + 8);
+            putString(payload, entry.getKey());
+            payload.putLong(entry.getValue());
+            records.add(payload.array());
+            required += HEADER_SIZE + 1 + payload.capacity();
+        }
+        if (required > MAX_FILE_SIZE) {
+            throw new IOException("schedule journal state exceeds " + MAX_FILE_SIZE + " bytes: " + path);
+        }
+        // 有效状态超过一半时扩容，避免频繁压缩
+        while (required * 2 > fileSize && fileSize < MAX_FILE_SIZE) {
+            fileSize = Math.min(fileSize * 2, MAX_FILE_SIZE);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            for (int i = 0; i < records.size(); i++) {
+                writeRecord(tmpBuffer, i < retryCount ? TYPE_SAVE_RETRY : TYPE_TASK_TIME, records.get(i));
+            }
+            tmpBuffer.force();
+        }
+        // 先释放旧文件的映射再替换，部分系统不允许替换仍被映射的文件
+        MappedByteBuffer old = buffer;
+        buffer = null;
+        unmap(old);
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(path);
+        // 跳过刚写入的记录
+        replaySkip();
+    }
+
+    private void replaySkip() {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0) {
+                break;
+            }
+            buffer.position(start + HEADER_SIZE + length);
+        }
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+
+    /**
+     * 立即释放内存映射，释放失败时等待GC回收
+     */
+    private void unmap(MappedByteBuffer mapped) {
+        if (mapped == null) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // JDK 8没有invokeCleaner，直接调用DirectByteBuffer的cleaner
+                Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mapped);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("unmap schedule journal {} failed, wait for GC", path, e);
+        }
+    }
+
+    private static byte[] encodeRetry(ScheduleRetryDTO retry) {
+        ByteBuffer payload = ByteBuffer.allocate(stringSize(retry.getTaskId()) + 4 + 8 + 8);
+        putString(payload, retry.getTaskId());
+        payload.putInt(retry.getRetryTimes());
+        payload.putLong(retry.getDeadlineTime());
+        payload.putLong(retry.getNextRunTime());
+        return payload.array();
+    }
+
+    private static byte[] encodeString(String value) {
+        ByteBuffer payload = ByteBuffer.allocate(stringSize(value));
+        putString(payload, value);
+        return payload.array();
+    }
+
+    private static int stringSize(String value) {
+        return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer target, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.putInt(bytes.length);
+        target.put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        byte[] bytes = new byte[source.getInt()];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package scheduled.store;
+
+import scheduled.domain.dto.ScheduleRetryDTO;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <big>不持久化的存储</big>
+ * <p>默认实现，重启后重试状态丢失</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+public class NoopScheduleStore implements ScheduleStore {
+
+    @Override
+    public void saveRetry(ScheduleRetryDTO retry) {
+    }
+
+    @Override
+    public void removeRetry(String taskId) {
+    }
+
+    @Override
+    public List<ScheduleRetryDTO> loadRetries() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void saveTaskTime(String taskId, long millis) {
+    }
+
+    @Override
+    public Map<String, Long> loadTaskTimes() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,94 @@
+package scheduled.store;
+
+import org.redisson.api.RMap;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
+import scheduled.domain.dto.ScheduleRetryDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <big>基于Redis的存储</big>
+ * <p>待重试的任务按下一次重试时间保存在有序集合中，重试状态和任务耗时保存在hash中，
+ * 机器重建（本地文件丢失）后也能恢复。待重试的任务按节点隔离，每个节点只恢复和删除自己的任务，
+ * 任务耗时所有节点共享</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+public class RedisScheduleStore implements ScheduleStore {
+    private final RScoredSortedSet<String> retryQueue;
+    private final RMap<String, String> retryRecords;
+    private final RMap<String, String> taskTimes;
+
+    /**
+     * @param redissonClient Redisson客户端
+     * @param keyPrefix      key的前缀，不同应用需要使用不同的前缀
+     * @param nodeId         节点标识，同一个应用的不同节点需要使用不同的标识，重建后沿用原来的标识才能恢复
+     */
+    public RedisScheduleStore(RedissonClient redissonClient, String keyPrefix, String nodeId) {
+        this.retryQueue = redissonClient.getScoredSortedSet(keyPrefix + ":retry:queue:" + nodeId, StringCodec.INSTANCE);
+        this.retryRecords = redissonClient.getMap(keyPrefix + ":retry:record:" + nodeId, StringCodec.INSTANCE);
+        this.taskTimes = redissonClient.getMap(keyPrefix + ":task:time", StringCodec.INSTANCE);
+    }
+
+    @Override
+    public void saveRetry(ScheduleRetryDTO retry) {
+        retryRecords.fastPutAsync(retry.getTaskId(), retry.getRetryTimes() + ":" + retry.getDeadlineTime());
+        retryQueue.addAsync(retry.getNextRunTime(), retry.getTaskId());
+    }
+
+    @Override
+    public void removeRetry(String taskId) {
+        retryQueue.removeAsync(taskId);
+        retryRecords.fastRemoveAsync(taskId);
+    }
+
+    @Override
+    public List<ScheduleRetryDTO> loadRetries() {
+        Collection<ScoredEntry<String>> entries = retryQueue.entryRange(0, -1);
+        Set<String> taskIds = new HashSet<>();
+        for (ScoredEntry<String> entry : entries) {
+            taskIds.add(entry.getValue());
+        }
+        Map<String, String> records = retryRecords.getAll(taskIds);
+        List<ScheduleRetryDTO> retries = new ArrayList<>(entries.size());
+        for (ScoredEntry<String> entry : entries) {
+            String record = records.get(entry.getValue());
+            if (record == null) {
+                continue;
+            }
+            String[] parts = record.split(":");
+            retries.add(new ScheduleRetryDTO(entry.getValue(), Integer.parseInt(parts[0]), Long.parseLong(parts[1]),
+                    entry.getScore().longValue()));
+        }
+        return retries;
+    }
+
+    @Override
+    public void saveTaskTime(String taskId, long millis) {
+        taskTimes.fastPutAsync(taskId, String.valueOf(millis));
+    }
+
+    @Override
+    public Map<String, Long> loadTaskTimes() {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, String> entry : taskTimes.readAllMap().entrySet()) {
+            result.put(entry.getKey(), Long.parseLong(entry.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        // Redisson客户端由Spring管理
+    }
+}
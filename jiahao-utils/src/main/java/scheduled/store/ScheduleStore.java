@@ -0,0 +1,57 @@
+package scheduled.store;
+
+import scheduled.domain.dto.ScheduleRetryDTO;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <big>重试状态存储</big>
+ * <p>保存待重试的任务和任务的执行耗时，重启后由ScheduledUtil读取并恢复</p>
+ *
+ * @author 13684
+ * @data 2024/7/23 上午10:05
+ */
+public interface ScheduleStore {
+
+    /**
+     * 保存或更新待重试的任务
+     *
+     * @param retry 重试状态
+     */
+    void saveRetry(ScheduleRetryDTO retry);
+
+    /**
+     * 删除待重试的任务
+     *
+     * @param taskId 任务id
+     */
+    void removeRetry(String taskId);
+
+    /**
+     * 读取所有待重试的任务，按下一次重试时间排序
+     *
+     * @return 待重试的任务
+     */
+    List<ScheduleRetryDTO> loadRetries();
+
+    /**
+     * 保存任务的分位耗时，用于重启后恢复任务分类
+     *
+     * @param taskId  任务id
+     * @param millis  分位耗时（毫秒）
+     */
+    void saveTaskTime(String taskId, long millis);
+
+    /**
+     * 读取所有任务的分位耗时
+     *
+     * @return 任务id和分位耗时（毫秒）
+     */
+    Map<String, Long> loadTaskTimes();
+
+    /**
+     * 关闭存储
+     */
+    void close();
+}
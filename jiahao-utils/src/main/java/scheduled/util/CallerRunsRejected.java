@@ -0,0 +1,40 @@
+package scheduled.util;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * <big>调用方执行拒绝策略</big>
+ * <p>在提交任务的线程中直接执行，形成自然的背压；同时在调用方执行的任务数有预算，
+ * 超过预算的任务交给兜底策略处理，避免所有请求线程都被长任务占住</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+public class CallerRunsRejected implements RejectedExecutionHandler {
+    private final Semaphore budget;
+    private final RejectedExecutionHandler fallback;
+
+    /**
+     * @param budget   同时在调用方执行的最大任务数
+     * @param fallback 超过预算时的兜底策略
+     */
+    public CallerRunsRejected(int budget, RejectedExecutionHandler fallback) {
+        this.budget = new Semaphore(Math.max(0, budget));
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown() || !budget.tryAcquire()) {
+            fallback.rejectedExecution(r, executor);
+            return;
+        }
+        try {
+            r.run();
+        } finally {
+            budget.release();
+        }
+    }
+}
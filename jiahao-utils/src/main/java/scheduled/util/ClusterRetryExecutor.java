@@ -0,0 +1,206 @@
+package scheduled.util;
+
+import com.alibaba.fastjson2.JSON;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBlockingQueue;
+import org.redisson.api.RDelayedQueue;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleClusterTaskDTO;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * <big>集群重试执行器</big>
+ * <p>多个节点共用一个Redis延迟队列，失败的任务按重试间隔放入延迟队列，到期后进入就绪队列，
+ * 由空闲的节点取走执行，每条重试消息只会被一个节点取到，忙的节点取得少，闲的节点取得多。
+ * 同一个任务在整个集群同时只能有一个执行中的实例（按任务id加带过期时间的占用标记），
+ * 其余节点的触发直接跳过。取到消息的节点没有注册该任务的执行方法时，转交给其他节点，超过次数后放弃</p>
+ *
+ * @author 13684
+ * @data 2024/7/24 下午2:20
+ */
+@Slf4j
+public class ClusterRetryExecutor {
+    /**
+     * 最多转交的次数
+     */
+    private static final int MAX_HOPS = 8;
+    /**
+     * 转交给其他节点前的延迟（毫秒）
+     */
+    private static final long HOP_DELAY_MILLIS = 1000;
+
+    private final RedissonClient redissonClient;
+    private final ScheduleConfig scheduleConfig;
+    private final String keyPrefix;
+    private final RBlockingQueue<String> readyQueue;
+    private final RDelayedQueue<String> delayedQueue;
+    private final Function<String, Supplier<Boolean>> supplierLookup;
+    private final Function<String, Executor> executorRouter;
+    private final BiConsumer<String, Long> durationRecorder;
+    private final ToLongBiFunction<String, Integer> retryDelay;
+    private final ExecutorService consumers;
+    private volatile boolean running = true;
+
+    /**
+     * @param redissonClient   Redisson客户端
+     * @param scheduleConfig   定时任务配置
+     * @param supplierLookup   根据任务id查找执行方法
+     * @param executorRouter   根据任务id选择执行的线程池
+     * @param durationRecorder 记录任务执行耗时（毫秒）
+     * @param retryDelay       根据任务id和已重试次数计算重试间隔（毫秒）
+     */
+    public ClusterRetryExecutor(RedissonClient redissonClient, ScheduleConfig scheduleConfig,
+                                Function<String, Supplier<Boolean>> supplierLookup,
+                                Function<String, Executor> executorRouter,
+                                BiConsumer<String, Long> durationRecorder,
+                                ToLongBiFunction<String, Integer> retryDelay) {
+        this.redissonClient = redissonClient;
+        this.scheduleConfig = scheduleConfig;
+        this.keyPrefix = scheduleConfig.getStoreKeyPrefix() + ":cluster";
+        this.readyQueue = redissonClient.getBlockingQueue(keyPrefix + ":ready", StringCodec.INSTANCE);
+        this.delayedQueue = redissonClient.getDelayedQueue(readyQueue);
+        this.supplierLookup = supplierLookup;
+        this.executorRouter = executorRouter;
+        this.durationRecorder = durationRecorder;
+        this.retryDelay = retryDelay;
+        int threads = Math.max(1, scheduleConfig.getClusterConsumerThreads());
+        this.consumers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("schedule-cluster-%d").setDaemon(true).build());
+        for (int i = 0; i < threads; i++) {
+            consumers.execute(this::consume);
+        }
+    }
+
+    /**
+     * 占用任务，整个集群同时只有一个节点能占用成功，占用在最大重试时间后自动过期
+     *
+     * @param taskId 任务id
+     * @return 是否占用成功
+     */
+    public boolean claim(String taskId) {
+        return redissonClient.<String>getBucket(claimKey(taskId), StringCodec.INSTANCE)
+                .trySet(redissonClient.getId(), maxRetryMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 释放任务的占用
+     *
+     * @param taskId 任务id
+     */
+    public void release(String taskId) {
+        redissonClient.getBucket(claimKey(taskId), StringCodec.INSTANCE).delete();
+    }
+
+    /**
+     * 按任务的重试策略计算间隔，把任务放入集群的延迟队列
+     *
+     * @param taskId       任务id
+     * @param retryTimes   已经重试的次数
+     * @param deadlineTime 最大重试时间（毫秒时间戳）
+     */
+    public void scheduleRetry(String taskId, int retryTimes, long deadlineTime) {
+        offer(new ScheduleClusterTaskDTO(taskId, retryTimes, deadlineTime, 0), retryDelay.applyAsLong(taskId, retryTimes));
+    }
+
+    public void shutdown() {
+        running = false;
+        consumers.shutdownNow();
+        delayedQueue.destroy();
+    }
+
+    private void offer(ScheduleClusterTaskDTO task, long delayMillis) {
+        delayedQueue.offer(JSON.toJSONString(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 从就绪队列取重试消息，交给对应的线程池执行
+     */
+    private void consume() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                String message = readyQueue.poll(1, TimeUnit.SECONDS);
+                if (message != null) {
+                    handle(JSON.parseObject(message, ScheduleClusterTaskDTO.class));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("cluster retry consume failed", e);
+            }
+        }
+    }
+
+    private void handle(ScheduleClusterTaskDTO task) {
+        String taskId = task.getTaskId();
+        if (task.getRetryTimes() >= scheduleConfig.getMaxRetryTimes()) {
+            release(taskId);
+            log.error("{} task retry times is over max retry times!", taskId);
+            return;
+        }
+        if (System.currentTimeMillis() > task.getDeadlineTime()) {
+            release(taskId);
+            log.error("{} task retry times is over deadline time!", taskId);
+            return;
+        }
+        Supplier<Boolean> supplier = supplierLookup.apply(taskId);
+        if (supplier == null) {
+            // 本节点没有该任务的执行方法，转交给其他节点
+            if (task.getHops() >= MAX_HOPS) {
+                release(taskId);
+                log.error("{} task has no registered supplier on any node, give up", taskId);
+                return;
+            }
+            task.setHops(task.getHops() + 1);
+            offer(task, HOP_DELAY_MILLIS);
+            return;
+        }
+        try {
+            // 线程池满时会阻塞在这里，节点忙时自然少取消息
+            executorRouter.apply(taskId).execute(new TaskRunnable(taskId, () -> execute(task, supplier),
+                    () -> offer(task, retryDelay.applyAsLong(taskId, task.getRetryTimes()))));
+        } catch (RejectedExecutionException e) {
+            offer(task, retryDelay.applyAsLong(taskId, task.getRetryTimes()));
+        }
+    }
+
+    private void execute(ScheduleClusterTaskDTO task, Supplier<Boolean> supplier) {
+        String taskId = task.getTaskId();
+        long start = System.currentTimeMillis();
+        log.info("{} task cluster retry", taskId);
+        boolean success = false;
+        try {
+            success = Boolean.TRUE.equals(supplier.get());
+        } catch (Exception e) {
+            log.error("{} task fail Exception: {}", taskId, e.getMessage(), e);
+        } finally {
+            durationRecorder.accept(taskId, System.currentTimeMillis() - start);
+        }
+        if (success) {
+            release(taskId);
+            return;
+        }
+        task.setRetryTimes(task.getRetryTimes() + 1);
+        task.setHops(0);
+        offer(task, retryDelay.applyAsLong(taskId, task.getRetryTimes()));
+    }
+
+    private String claimKey(String taskId) {
+        return keyPrefix + ":claim:" + taskId;
+    }
+
+    private long maxRetryMillis() {
+        return scheduleConfig.getMaxRetryIntervalUnit().toMillis(scheduleConfig.getMaxRetryInterval());
+    }
+}
@@ -0,0 +1,122 @@
+package scheduled.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * <big>基于定时线程池的重试调度器</big>
+ * <p>任务保存在按到期时间排序的堆中，添加和取消都是O(log n)，适合待重试任务不多的场景</p>
+ *
+ * @author 13684
+ * @data 2024/7/22 下午3:10
+ */
+@Slf4j
+public class ExecutorRetryScheduler implements RetryScheduler {
+    private final ScheduledExecutorService service;
+
+    public ExecutorRetryScheduler(ScheduledExecutorService service) {
+        this.service = service;
+    }
+
+    @Override
+    public Future<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        return service.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+    }
+
+    @Override
+    public Future<?> scheduleWithDynamicDelay(Runnable task, long initialDelay, LongSupplier nextDelay, TimeUnit unit) {
+        DynamicTask dynamicTask = new DynamicTask(task, nextDelay, unit);
+        dynamicTask.schedule(initialDelay);
+        return dynamicTask;
+    }
+
+    @Override
+    public void shutdown() {
+        service.shutdown();
+    }
+
+    /**
+     * 每次执行结束后按计算出的间隔重新提交的任务，同时作为取消任务用的Future
+     */
+    private final class DynamicTask implements Runnable, Future<Object> {
+        private final Runnable task;
+        private final LongSupplier nextDelay;
+        private final TimeUnit unit;
+        /**
+         * 只会异常结束或者被取消，与scheduleWithFixedDelay返回的Future一致
+         */
+        private final CompletableFuture<Object> done = new CompletableFuture<>();
+        private volatile Future<?> current;
+
+        private DynamicTask(Runnable task, LongSupplier nextDelay, TimeUnit unit) {
+            this.task = task;
+            this.nextDelay = nextDelay;
+            this.unit = unit;
+        }
+
+        private void schedule(long delay) {
+            try {
+                current = service.schedule(this, Math.max(0, delay), unit);
+            } catch (RejectedExecutionException e) {
+                done.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (done.isDone()) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // 与ScheduledThreadPoolExecutor一致，执行异常后不再重复执行
+                log.error("retry task execute failed, stop repeating", e);
+                done.completeExceptionally(e);
+                return;
+            }
+            if (!done.isDone() && !service.isShutdown()) {
+                schedule(nextDelay.getAsLong());
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = done.cancel(mayInterruptIfRunning);
+            Future<?> future = current;
+            if (cancelled && future != null) {
+                future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return done.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.isDone();
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            return done.get();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return done.get(timeout, unit);
+        }
+    }
+}
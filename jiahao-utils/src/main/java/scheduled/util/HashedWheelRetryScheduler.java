@@ -0,0 +1,340 @@
+package scheduled.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * <big>基于哈希时间轮的重试调度器</big>
+ * <p>时间轮按tick分格，每格是一个双向链表，任务按到期时间落到对应的格子里，超过一圈的任务记录剩余圈数；
+ * 添加和取消都是O(1)，单个时间轮线程每个tick批量取出一格中到期的任务交给执行线程池，适合大量待重试任务的场景。
+ * 到期时间的精度为一个tick</p>
+ *
+ * @author 13684
+ * @data 2024/7/22 下午3:10
+ */
+@Slf4j
+public class HashedWheelRetryScheduler implements RetryScheduler {
+    /**
+     * 每个tick最多从待添加队列转移的任务数，避免一次积压太多导致时间轮延迟
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    /**
+     * 新添加和需要再次执行的任务，由时间轮线程放入格子
+     */
+    private final Queue<WheelTask> pendingTasks = new ConcurrentLinkedQueue<>();
+    /**
+     * 已取消的任务，由时间轮线程从格子中移除
+     */
+    private final Queue<WheelTask> cancelledTasks = new ConcurrentLinkedQueue<>();
+    /**
+     * 执行到期任务的线程池
+     */
+    private final ExecutorService executor;
+    private final Thread workerThread;
+    private final long startTime;
+    private volatile boolean running = true;
+
+    /**
+     * @param tickMillis    每格的时间（毫秒）
+     * @param wheelSize     格数，会向上取整为2的幂
+     * @param workerThreads 执行到期任务的线程数
+     */
+    public HashedWheelRetryScheduler(long tickMillis, int wheelSize, int workerThreads) {
+        if (tickMillis <= 0 || wheelSize <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("tickMillis, wheelSize and workerThreads must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.min(wheelSize, 1 << 30) - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.executor = Executors.newFixedThreadPool(workerThreads,
+                new ThreadFactoryBuilder().setNameFormat("schedule-wheel-worker-%d").setDaemon(true).build());
+        this.startTime = System.nanoTime();
+        this.workerThread = new ThreadFactoryBuilder().setNameFormat("schedule-wheel-%d").setDaemon(true).build()
+                .newThread(this::work);
+        this.workerThread.start();
+    }
+
+    @Override
+    public Future<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        long delayNanos = unit.toNanos(delay);
+        return schedule(task, unit.toNanos(initialDelay), () -> delayNanos);
+    }
+
+    @Override
+    public Future<?> scheduleWithDynamicDelay(Runnable task, long initialDelay, LongSupplier nextDelay, TimeUnit unit) {
+        return schedule(task, unit.toNanos(initialDelay), () -> unit.toNanos(nextDelay.getAsLong()));
+    }
+
+    private Future<?> schedule(Runnable task, long initialDelayNanos, LongSupplier nextDelayNanos) {
+        if (!running) {
+            throw new RejectedExecutionException("retry scheduler has been shut down");
+        }
+        WheelTask wheelTask = new WheelTask(task, nextDelayNanos);
+        wheelTask.deadline = System.nanoTime() - startTime + initialDelayNanos;
+        pendingTasks.add(wheelTask);
+        return wheelTask;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        workerThread.interrupt();
+        executor.shutdown();
+    }
+
+    /**
+     * 时间轮线程
+     */
+    private void work() {
+        long tick = 0;
+        while (running) {
+            long deadline = waitForNextTick(tick);
+            if (deadline < 0) {
+                continue;
+            }
+            removeCancelled();
+            transferPending(tick);
+            List<WheelTask> expired = wheel[(int) (tick & mask)].expire(deadline);
+            for (WheelTask task : expired) {
+                dispatch(task);
+            }
+            tick++;
+        }
+    }
+
+    /**
+     * 等待到下一个tick
+     *
+     * @return 当前tick的截止时间（相对startTime），被中断时返回-1
+     */
+    private long waitForNextTick(long tick) {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return deadline;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        WheelTask task;
+        while ((task = cancelledTasks.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+            }
+        }
+    }
+
+    private void transferPending(long tick) {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            WheelTask task = pendingTasks.poll();
+            if (task == null) {
+                return;
+            }
+            if (task.isCancelled()) {
+                continue;
+            }
+            long calculated = task.deadline / tickNanos;
+            task.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放到当前格，本次tick就会执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(task);
+        }
+    }
+
+    /**
+     * 交给执行线程池，执行结束后按计算出的间隔重新放回时间轮
+     */
+    private void dispatch(WheelTask task) {
+        try {
+            executor.execute(() -> {
+                if (task.isCancelled()) {
+                    return;
+                }
+                try {
+                    task.task.run();
+                } catch (Throwable e) {
+                    // 与ScheduledThreadPoolExecutor一致，执行异常后不再重复执行
+                    log.error("retry task execute failed, stop repeating", e);
+                    task.fail(e);
+                    return;
+                }
+                if (!task.isCancelled() && running) {
+                    task.deadline = System.nanoTime() - startTime + Math.max(0, task.nextDelayNanos.getAsLong());
+                    pendingTasks.add(task);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("retry task dispatch rejected, scheduler is shutting down", e);
+        }
+    }
+
+    /**
+     * 时间轮中的一格，只被时间轮线程访问
+     */
+    private static final class Bucket {
+        private WheelTask head;
+        private WheelTask tail;
+
+        private void add(WheelTask task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        /**
+         * 取出本格中到期的任务，未到期的任务圈数减一
+         */
+        private List<WheelTask> expire(long deadline) {
+            List<WheelTask> expired = new ArrayList<>();
+            WheelTask task = head;
+            while (task != null) {
+                WheelTask next = task.next;
+                if (task.isCancelled()) {
+                    remove(task);
+                } else if (task.remainingRounds <= 0 && task.deadline <= deadline) {
+                    remove(task);
+                    expired.add(task);
+                } else {
+                    task.remainingRounds--;
+                }
+                task = next;
+            }
+            return expired;
+        }
+
+        private void remove(WheelTask task) {
+            if (task.bucket != this) {
+                return;
+            }
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            if (task == head) {
+                head = task.next;
+            }
+            if (task == tail) {
+                tail = task.prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+        }
+    }
+
+    /**
+     * 时间轮中的重复任务，同时作为取消任务用的Future
+     */
+    private final class WheelTask implements Future<Object> {
+        private static final int ST_WAITING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_FAILED = 2;
+
+        private final Runnable task;
+        private final LongSupplier nextDelayNanos;
+        private final AtomicInteger state = new AtomicInteger(ST_WAITING);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable cause;
+        /**
+         * 以下字段只在时间轮线程中读写（deadline在放入待添加队列前写入，队列保证可见性）
+         */
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTask prev;
+        private WheelTask next;
+
+        private WheelTask(Runnable task, LongSupplier nextDelayNanos) {
+            this.task = task;
+            this.nextDelayNanos = nextDelayNanos;
+        }
+
+        private void fail(Throwable e) {
+            cause = e;
+            if (state.compareAndSet(ST_WAITING, ST_FAILED)) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(ST_WAITING, ST_CANCELLED)) {
+                return false;
+            }
+            cancelledTasks.add(this);
+            done.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return state.get() != ST_WAITING;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private Object report() throws ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            throw new ExecutionException(cause);
+        }
+    }
+}
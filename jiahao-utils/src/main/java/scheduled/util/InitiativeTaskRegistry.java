@@ -0,0 +1,368 @@
+package scheduled.util;
+
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.stereotype.Component;
+import scheduled.annotation.InitiativeExecute;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleBatchDTO;
+import scheduled.domain.dto.ScheduleBatchItemDTO;
+import scheduled.domain.dto.ScheduleBatchSummaryDTO;
+import scheduled.domain.dto.ScheduleExecutionDTO;
+import scheduled.domain.dto.ScheduleTaskDTO;
+import scheduled.enums.ScheduleExecutionStatusEnum;
+
+import javax.annotation.Resource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * <big>主动调用的任务索引</big>
+ * <p>启动时扫描所有标注了@InitiativeExecute的bean，把无参的实例方法绑定到bean上生成MethodHandle，
+ * 调用时按类名和方法名直接取出执行，不再每次反射查找；任务按耗时分类异步提交到线程池，返回执行id，
+ * 执行状态保留在有上限的记录中。单参数方法也会建立索引，供批量执行按参数逐个调用</p>
+ *
+ * @author 13684
+ * @data 2024/8/5 上午10:20
+ */
+@Slf4j
+@Component
+public class InitiativeTaskRegistry implements ApplicationContextAware, SmartInitializingSingleton {
+    private static final MethodType VOID_TYPE = MethodType.methodType(void.class);
+    private static final MethodType ARG_TYPE = MethodType.methodType(void.class, Object.class);
+
+    @Resource
+    private ScheduleConfig scheduleConfig;
+    @Resource
+    private ScheduledUtil scheduledUtil;
+    private ApplicationContext applicationContext;
+    // 全类名#方法名 -> 绑定到bean上的方法
+    private final Map<String, MethodHandle> invokers = new ConcurrentHashMap<>();
+    // 全类名#方法名 -> 绑定到bean上的单参数方法
+    private final Map<String, ArgInvoker> argInvokers = new ConcurrentHashMap<>();
+    // 执行记录，按提交顺序保留最近的记录
+    private Map<String, ScheduleExecutionDTO> executions;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        int historySize = Math.max(1, scheduleConfig.getExecutionHistorySize());
+        executions = Collections.synchronizedMap(new LinkedHashMap<String, ScheduleExecutionDTO>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ScheduleExecutionDTO> eldest) {
+                return size() > historySize;
+            }
+        });
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        applicationContext.getBeansWithAnnotation(InitiativeExecute.class).forEach((beanName, bean) -> {
+            Class<?> targetClass = AopUtils.getTargetClass(bean);
+            for (Method method : targetClass.getDeclaredMethods()) {
+                if (method.getParameterCount() > 1 || Modifier.isStatic(method.getModifiers()) || method.isSynthetic()) {
+                    continue;
+                }
+                String key = key(targetClass.getName(), method.getName());
+                try {
+                    method.setAccessible(true);
+                    MethodHandle handle = lookup.unreflect(method).bindTo(bean);
+                    if (method.getParameterCount() == 0) {
+                        invokers.put(key, handle.asType(VOID_TYPE));
+                    } else if (argInvokers.putIfAbsent(key, new ArgInvoker(handle.asType(ARG_TYPE),
+                            MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType())) != null) {
+                        log.warn("Initiative method overloaded, only the first is indexed! {}", key);
+                    }
+                } catch (Exception e) {
+                    log.warn("Initiative method not indexed! {}#{}", targetClass.getName(), method.getName(), e);
+                }
+            }
+        });
+        log.info("Initiative task index built, {} methods, {} single-argument methods", invokers.size(), argInvokers.size());
+    }
+
+    /**
+     * 异步执行任务
+     *
+     * @param className  任务全类名
+     * @param methodName 任务方法名
+     * @return 执行记录，任务不存在或者线程池拒绝时状态为Rejected
+     */
+    public ScheduleExecutionDTO submit(String className, String methodName) {
+        String taskId = key(className, methodName);
+        ScheduleExecutionDTO execution = new ScheduleExecutionDTO(UUID.randomUUID().toString(), className, methodName,
+                ScheduleExecutionStatusEnum.Queued, LocalDateTime.now(), null, null, null);
+        MethodHandle invoker = invokers.get(taskId);
+        if (invoker == null) {
+            execution.setStatus(ScheduleExecutionStatusEnum.Rejected);
+            execution.setMessage("Method not found in a class annotated with @InitiativeExecute");
+            return execution;
+        }
+        String executionId = execution.getExecutionId();
+        executions.put(executionId, execution);
+        try {
+            scheduledUtil.execute(taskId, () -> run(executionId, invoker), () -> update(executionId, dto -> {
+                dto.setStatus(ScheduleExecutionStatusEnum.Rejected);
+                dto.setMessage("Task dropped by the pool");
+            }));
+        } catch (RejectedExecutionException e) {
+            update(executionId, dto -> {
+                dto.setStatus(ScheduleExecutionStatusEnum.Rejected);
+                dto.setMessage(e.getMessage());
+            });
+        }
+        return getExecution(executionId);
+    }
+
+    /**
+     * 查询执行记录
+     *
+     * @param executionId 执行id
+     * @return 执行记录的副本，不存在或者已经被清理时为null
+     */
+    public ScheduleExecutionDTO getExecution(String executionId) {
+        synchronized (executions) {
+            ScheduleExecutionDTO dto = executions.get(executionId);
+            return dto == null ? null : new ScheduleExecutionDTO(dto.getExecutionId(), dto.getClassName(), dto.getMethodName(),
+                    dto.getStatus(), dto.getSubmitTime(), dto.getStartTime(), dto.getFinishTime(), dto.getMessage());
+        }
+    }
+
+    /**
+     * 批量执行任务，同时执行的任务数不超过parallelism，一个任务结束后再提交下一个，不占用调用方线程
+     *
+     * @param batch     批量任务
+     * @param onItem    每个任务结束后回调
+     * @param onDone    所有任务结束后回调
+     * @param cancelled 返回true后不再提交剩余的任务（例如调用方已经断开）
+     */
+    public void submitBatch(ScheduleBatchDTO batch, Consumer<ScheduleBatchItemDTO> onItem,
+                            Consumer<ScheduleBatchSummaryDTO> onDone, BooleanSupplier cancelled) {
+        List<ScheduleBatchItemDTO> items = new ArrayList<>();
+        if (batch.getTasks() != null) {
+            for (ScheduleTaskDTO task : batch.getTasks()) {
+                items.add(newItem(items.size(), task.getClassName(), task.getMethodName(), null));
+            }
+        }
+        if (batch.getArgs() != null) {
+            for (Object arg : batch.getArgs()) {
+                items.add(newItem(items.size(), batch.getClassName(), batch.getMethodName(), arg));
+            }
+        }
+        int parallelism = batch.getParallelism() != null ? batch.getParallelism() : scheduleConfig.getBatchParallelism();
+        parallelism = Math.max(1, Math.min(parallelism, scheduleConfig.getBatchMaxParallelism()));
+        log.info("Schedule batch submitted! total={}, parallelism={}", items.size(), parallelism);
+        BatchRun run = new BatchRun(items, onItem, onDone, cancelled);
+        if (items.isEmpty()) {
+            run.done();
+            return;
+        }
+        for (int i = 0; i < Math.min(parallelism, items.size()); i++) {
+            run.next();
+        }
+    }
+
+    private static ScheduleBatchItemDTO newItem(int index, String className, String methodName, Object arg) {
+        ScheduleBatchItemDTO item = new ScheduleBatchItemDTO();
+        item.setIndex(index);
+        item.setClassName(className);
+        item.setMethodName(methodName);
+        item.setArg(arg);
+        return item;
+    }
+
+    /**
+     * 找到任务对应的执行方法，有参数时按方法的参数类型转换
+     *
+     * @return 执行方法，任务不存在时为null
+     */
+    private Invocation resolve(ScheduleBatchItemDTO item) {
+        String key = key(item.getClassName(), item.getMethodName());
+        if (item.getArg() == null) {
+            MethodHandle invoker = invokers.get(key);
+            return invoker == null ? null : () -> invoker.invokeExact();
+        }
+        ArgInvoker invoker = argInvokers.get(key);
+        if (invoker == null) {
+            return null;
+        }
+        Object arg = invoker.convert(item.getArg());
+        return () -> invoker.handle.invokeExact(arg);
+    }
+
+    private void run(String executionId, MethodHandle invoker) {
+        update(executionId, dto -> {
+            dto.setStatus(ScheduleExecutionStatusEnum.Running);
+            dto.setStartTime(LocalDateTime.now());
+        });
+        try {
+            invoker.invokeExact();
+            update(executionId, dto -> {
+                dto.setStatus(ScheduleExecutionStatusEnum.Success);
+                dto.setFinishTime(LocalDateTime.now());
+            });
+            log.info("Schedule execute success! executionId={}", executionId);
+        } catch (Throwable e) {
+            update(executionId, dto -> {
+                dto.setStatus(ScheduleExecutionStatusEnum.Failed);
+                dto.setFinishTime(LocalDateTime.now());
+                dto.setMessage(String.valueOf(e));
+            });
+            log.error("Schedule execute failed! executionId={}", executionId, e);
+        }
+    }
+
+    private void update(String executionId, Consumer<ScheduleExecutionDTO> consumer) {
+        synchronized (executions) {
+            ScheduleExecutionDTO dto = executions.get(executionId);
+            if (dto != null) {
+                consumer.accept(dto);
+            }
+        }
+    }
+
+    private static String key(String className, String methodName) {
+        return className + "#" + methodName;
+    }
+
+    // 执行一次任务
+    private interface Invocation {
+        void invoke() throws Throwable;
+    }
+
+    // 单参数方法
+    private static class ArgInvoker {
+        private final MethodHandle handle;
+        // 参数类型，基本类型转换为包装类型
+        private final Class<?> paramType;
+
+        private ArgInvoker(MethodHandle handle, Class<?> paramType) {
+            this.handle = handle;
+            this.paramType = paramType;
+        }
+
+        private Object convert(Object arg) {
+            return paramType.isInstance(arg) ? arg : JSON.parseObject(JSON.toJSONString(arg), paramType);
+        }
+    }
+
+    // 一次批量执行
+    private final class BatchRun {
+        private final List<ScheduleBatchItemDTO> items;
+        private final Consumer<ScheduleBatchItemDTO> onItem;
+        private final Consumer<ScheduleBatchSummaryDTO> onDone;
+        private final BooleanSupplier cancelled;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        // 已经回调过的任务数，全部回调后再汇总，保证汇总在所有任务结果之后
+        private final AtomicInteger reported = new AtomicInteger();
+        private final AtomicInteger success = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        private BatchRun(List<ScheduleBatchItemDTO> items, Consumer<ScheduleBatchItemDTO> onItem,
+                         Consumer<ScheduleBatchSummaryDTO> onDone, BooleanSupplier cancelled) {
+            this.items = items;
+            this.onItem = onItem;
+            this.onDone = onDone;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * 提交下一个任务，任务不存在或者被拒绝时直接记录结果并继续提交
+         */
+        private void next() {
+            while (!cancelled.getAsBoolean()) {
+                int index = cursor.getAndIncrement();
+                if (index >= items.size()) {
+                    return;
+                }
+                ScheduleBatchItemDTO item = items.get(index);
+                Invocation invocation;
+                try {
+                    invocation = resolve(item);
+                } catch (Exception e) {
+                    finish(item, ScheduleExecutionStatusEnum.Rejected, 0, "Argument conversion failed: " + e.getMessage());
+                    continue;
+                }
+                if (invocation == null) {
+                    finish(item, ScheduleExecutionStatusEnum.Rejected, 0, "Method not found in a class annotated with @InitiativeExecute");
+                    continue;
+                }
+                try {
+                    scheduledUtil.execute(key(item.getClassName(), item.getMethodName()), () -> {
+                        long start = System.currentTimeMillis();
+                        try {
+                            invocation.invoke();
+                            finish(item, ScheduleExecutionStatusEnum.Success, System.currentTimeMillis() - start, null);
+                        } catch (Throwable e) {
+                            log.error("Schedule batch item failed! index={}", item.getIndex(), e);
+                            finish(item, ScheduleExecutionStatusEnum.Failed, System.currentTimeMillis() - start, String.valueOf(e));
+                        }
+                        next();
+                    }, () -> {
+                        // 已经接收的任务被线程池丢弃，记为拒绝并继续提交
+                        finish(item, ScheduleExecutionStatusEnum.Rejected, 0, "Task dropped by the pool");
+                        next();
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    finish(item, ScheduleExecutionStatusEnum.Rejected, 0, e.getMessage());
+                }
+            }
+        }
+
+        private void finish(ScheduleBatchItemDTO item, ScheduleExecutionStatusEnum status, long durationMillis, String message) {
+            if (status == ScheduleExecutionStatusEnum.Success) {
+                success.incrementAndGet();
+            } else if (status == ScheduleExecutionStatusEnum.Failed) {
+                failed.incrementAndGet();
+            } else {
+                rejected.incrementAndGet();
+            }
+            item.setStatus(status);
+            item.setDurationMillis(durationMillis);
+            item.setMessage(message);
+            item.setTotal(items.size());
+            int count = finished.incrementAndGet();
+            item.setFinished(count);
+            try {
+                onItem.accept(item);
+            } catch (Exception e) {
+                log.warn("Schedule batch progress callback failed! index={}", item.getIndex(), e);
+            }
+            if (reported.incrementAndGet() == items.size()) {
+                done();
+            }
+        }
+
+        private void done() {
+            ScheduleBatchSummaryDTO summary = new ScheduleBatchSummaryDTO(items.size(), success.get(), failed.get(),
+                    rejected.get(), System.currentTimeMillis() - startTime);
+            log.info("Schedule batch finished! {}", summary);
+            onDone.accept(summary);
+        }
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+}
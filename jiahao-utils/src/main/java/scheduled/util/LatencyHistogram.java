@@ -0,0 +1,167 @@
+package scheduled.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <big>耗时直方图</big>
+ * <p>对数线性分桶，每个2的幂区间再等分为8个桶，相对误差不超过12.5%，内存固定（264个计数）。
+ * 每记录一定次数后所有计数减半，旧样本的权重随时间指数衰减，分位数反映的是最近的耗时分布。
+ * 记录不加锁，每个样本只对所在的桶做一次原子自增，线程池的每个任务都记录也不会互相阻塞；
+ * 读取时复制一份计数再计算，结果是近似一致的快照</p>
+ *
+ * @author 13684
+ * @data 2024/7/25 上午11:40
+ */
+public class LatencyHistogram {
+    /**
+     * 每个2的幂区间的子桶数 = 2^SUB_BUCKET_BITS
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * 桶数，覆盖 [0, 2^35) 的取值
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (35 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /**
+     * 每记录多少次衰减一次，小于等于0表示不衰减
+     */
+    private final int decayInterval;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param decayInterval 每记录多少次衰减一次，小于等于0表示不衰减
+     */
+    public LatencyHistogram(int decayInterval) {
+        this.decayInterval = decayInterval;
+    }
+
+    /**
+     * 记录一个样本
+     *
+     * @param value 样本值，负数按0处理
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(index(v));
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+        // 记录满一个间隔的线程负责衰减
+        if (decayInterval > 0 && recorded.incrementAndGet() % decayInterval == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param percentile 分位，取值 (0, 1]
+     * @return 分位数（所在桶的中间值），没有样本时返回-1
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = snapshot();
+        long total = total(snapshot);
+        if (total == 0) {
+            return -1;
+        }
+        long maxValue = max.get();
+        long target = Math.max(1, (long) Math.ceil(total * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(middle(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * 当前的有效样本数（衰减后）
+     */
+    public long count() {
+        return total(snapshot());
+    }
+
+    /**
+     * 记录过的最大值（不衰减）
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * 非空桶的计数
+     *
+     * @return 桶的上界（包含）-> 计数，按上界从小到大排列
+     */
+    public Map<Long, Long> buckets() {
+        long[] snapshot = snapshot();
+        Map<Long, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] > 0) {
+                buckets.put(upper(i), snapshot[i]);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 计数减半，旧样本的权重逐渐降低
+     */
+    private void decay() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.getAndUpdate(i, count -> count >> 1);
+        }
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private static long total(long[] snapshot) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int index = SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upper(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long middle(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
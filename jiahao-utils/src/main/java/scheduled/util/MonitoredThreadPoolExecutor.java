@@ -0,0 +1,222 @@
+package scheduled.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <big>带监控的线程池</big>
+ * <p>记录任务的排队时间、执行时间、提交数、完成数和拒绝数，供自动调整线程池使用；
+ * 每次采样后重新开始统计，采样结果反映的是两次采样之间的情况；另外保留不随采样重置的统计供监控查看</p>
+ *
+ * @author 13684
+ * @data 2024/7/26 上午10:15
+ */
+public class MonitoredThreadPoolExecutor extends ThreadPoolExecutor {
+    /**
+     * 监控用的直方图每记录多少次衰减一次
+     */
+    private static final int HISTOGRAM_DECAY_INTERVAL = 1024;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalRejected = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicReference<LatencyHistogram> waitMillis = new AtomicReference<>(new LatencyHistogram(0));
+    private final AtomicReference<LatencyHistogram> runMillis = new AtomicReference<>(new LatencyHistogram(0));
+    // 不随采样重置的统计，供监控查看，直方图按次数衰减反映最近的分布
+    private final LongAdder totalSubmitted = new LongAdder();
+    private final LatencyHistogram waitHistogram = new LatencyHistogram(HISTOGRAM_DECAY_INTERVAL);
+    private final LatencyHistogram runHistogram = new LatencyHistogram(HISTOGRAM_DECAY_INTERVAL);
+    private final ThreadLocal<Long> startTime = new ThreadLocal<>();
+    private volatile long lastSampleTime = System.nanoTime();
+
+    public MonitoredThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                       BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory,
+                                       RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        setRejectedExecutionHandler(handler);
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        // 包装一层，统计拒绝次数
+        RejectedExecutionHandler delegate = handler instanceof CountingRejectedHandler
+                ? ((CountingRejectedHandler) handler).delegate : handler;
+        super.setRejectedExecutionHandler(new CountingRejectedHandler(delegate));
+    }
+
+    /**
+     * 启动以来的拒绝次数
+     */
+    public long getRejectedCount() {
+        return totalRejected.sum();
+    }
+
+    /**
+     * 启动以来的提交次数
+     */
+    public long getSubmittedCount() {
+        return totalSubmitted.sum();
+    }
+
+    /**
+     * 最近的排队时间分布（毫秒），不随采样重置
+     */
+    public LatencyHistogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    /**
+     * 最近的执行时间分布（毫秒），不随采样重置
+     */
+    public LatencyHistogram getRunHistogram() {
+        return runHistogram;
+    }
+
+    /**
+     * 获取线程池包装前的任务
+     *
+     * @param runnable 任务
+     * @return 原始任务
+     */
+    public static Runnable unwrap(Runnable runnable) {
+        return runnable instanceof TimedRunnable ? ((TimedRunnable) runnable).delegate : runnable;
+    }
+
+    /**
+     * 获取原始的拒绝策略
+     */
+    public RejectedExecutionHandler getDelegateRejectedExecutionHandler() {
+        return ((CountingRejectedHandler) getRejectedExecutionHandler()).delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.increment();
+        totalSubmitted.increment();
+        dispatch(command instanceof TimedRunnable ? command : new TimedRunnable(command));
+    }
+
+    /**
+     * 把已经记录了入队时间的任务交给线程执行，子类可以替换执行的方式
+     *
+     * @param task 任务
+     */
+    protected void dispatch(Runnable task) {
+        super.execute(task);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        long now = System.nanoTime();
+        if (r instanceof TimedRunnable) {
+            long wait = TimeUnit.NANOSECONDS.toMillis(now - ((TimedRunnable) r).enqueueTime);
+            waitMillis.get().record(wait);
+            waitHistogram.record(wait);
+        }
+        startTime.set(now);
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        Long start = startTime.get();
+        if (start != null) {
+            long elapsed = System.nanoTime() - start;
+            runNanos.add(elapsed);
+            long run = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            runMillis.get().record(run);
+            runHistogram.record(run);
+            startTime.remove();
+        }
+        completed.increment();
+    }
+
+    /**
+     * 采样并重新开始统计
+     *
+     * @return 距离上一次采样期间的统计
+     */
+    public Sample sample() {
+        long now = System.nanoTime();
+        Sample sample = new Sample();
+        sample.intervalMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastSampleTime));
+        lastSampleTime = now;
+        sample.submitted = submitted.sumThenReset();
+        sample.completed = completed.sumThenReset();
+        sample.rejected = rejected.sumThenReset();
+        long run = runNanos.sumThenReset();
+        sample.runMeanMillis = sample.completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(run) / (double) sample.completed;
+        LatencyHistogram waits = waitMillis.getAndSet(new LatencyHistogram(0));
+        LatencyHistogram runs = runMillis.getAndSet(new LatencyHistogram(0));
+        sample.waitP99Millis = Math.max(0, waits.percentile(0.99));
+        sample.runP99Millis = Math.max(0, runs.percentile(0.99));
+        sample.queueSize = getQueue().size();
+        sample.activeCount = getActiveCount();
+        return sample;
+    }
+
+    /**
+     * 两次采样之间的统计
+     */
+    public static class Sample {
+        public long intervalMillis;
+        public long submitted;
+        public long completed;
+        public long rejected;
+        public double runMeanMillis;
+        public long waitP99Millis;
+        public long runP99Millis;
+        public int queueSize;
+        public int activeCount;
+
+        /**
+         * 每秒提交的任务数
+         */
+        public double arrivalRate() {
+            return submitted * 1000.0 / intervalMillis;
+        }
+    }
+
+    /**
+     * 记录入队时间的任务
+     */
+    private static final class TimedRunnable implements Runnable {
+        private final Runnable delegate;
+        private final long enqueueTime = System.nanoTime();
+
+        private TimedRunnable(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+
+    /**
+     * 统计拒绝次数的拒绝策略
+     */
+    private final class CountingRejectedHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler delegate;
+
+        private CountingRejectedHandler(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.increment();
+            totalRejected.increment();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
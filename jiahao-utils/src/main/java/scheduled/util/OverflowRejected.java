@@ -0,0 +1,154 @@
+package scheduled.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <big>溢出队列拒绝策略</big>
+ * <p>线程池满时任务放入溢出队列，提交任务的线程立即返回；后台线程在线程池队列有空位时按先后顺序把任务放回线程池。
+ * 带任务id的任务进入和离开溢出队列时回调，由调用方持久化，进程重启后溢出队列中的任务可以恢复。
+ * 溢出队列也满时交给兜底策略；放回时被拒绝或者关闭时还在溢出队列中的任务通过{@link TaskRunnable#drop}通知提交方</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+@Slf4j
+public class OverflowRejected implements RejectedExecutionHandler {
+    /**
+     * 线程池队列没有空位时的检查间隔（毫秒）
+     */
+    private static final long DRAIN_WAIT_MILLIS = 50;
+    /**
+     * 当前线程是否是放回任务的后台线程
+     */
+    private static final ThreadLocal<Boolean> DRAINING = new ThreadLocal<>();
+
+    private final BlockingDeque<Runnable> overflow;
+    private final RejectedExecutionHandler fallback;
+    private final Consumer<String> onOverflow;
+    private final Consumer<String> onDrain;
+    private final Thread drainer;
+    private volatile ThreadPoolExecutor executor;
+    private volatile boolean running = true;
+
+    /**
+     * @param name       线程池名称，用于后台线程名
+     * @param capacity   溢出队列容量
+     * @param fallback   溢出队列满时的兜底策略
+     * @param onOverflow 带任务id的任务进入溢出队列时的回调
+     * @param onDrain    带任务id的任务放回线程池时的回调
+     */
+    public OverflowRejected(String name, int capacity, RejectedExecutionHandler fallback,
+                            Consumer<String> onOverflow, Consumer<String> onDrain) {
+        this.overflow = new LinkedBlockingDeque<>(Math.max(1, capacity));
+        this.fallback = fallback;
+        this.onOverflow = onOverflow;
+        this.onDrain = onDrain;
+        this.drainer = new Thread(this::drain, "schedule-overflow-" + name);
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * 溢出队列中的任务数
+     */
+    public int getOverflowSize() {
+        return overflow.size();
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        this.executor = executor;
+        Runnable task = MonitoredThreadPoolExecutor.unwrap(r);
+        // 放回时再次被拒绝的任务回到队首，保持顺序
+        boolean offered = DRAINING.get() != null ? overflow.offerFirst(task) : overflow.offerLast(task);
+        if (!running || executor.isShutdown() || !offered) {
+            if (offered) {
+                overflow.remove(task);
+            }
+            fallback.rejectedExecution(r, executor);
+            return;
+        }
+        String taskId = TaskRunnable.taskIdOf(task);
+        if (taskId != null && DRAINING.get() == null) {
+            onOverflow.accept(taskId);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        drainer.interrupt();
+        // 持久化的溢出记录保留，进程重启后可以恢复
+        int size = 0;
+        int lost = 0;
+        Runnable task;
+        while ((task = overflow.pollFirst()) != null) {
+            size++;
+            if (!TaskRunnable.drop(task)) {
+                lost++;
+            }
+        }
+        if (size > 0) {
+            log.warn("{} overflow tasks are dropped on shutdown, {} without drop callback", size, lost);
+        }
+    }
+
+    private void drain() {
+        DRAINING.set(Boolean.TRUE);
+        while (running) {
+            Runnable task = null;
+            try {
+                task = overflow.take();
+                ThreadPoolExecutor target = executor;
+                // 等待线程池队列出现空位，队列缩容后剩余容量可能为负数
+                while (running && target.getQueue().remainingCapacity() <= 0) {
+                    TimeUnit.MILLISECONDS.sleep(DRAIN_WAIT_MILLIS);
+                }
+                if (!running) {
+                    drop(task);
+                    return;
+                }
+                String taskId = TaskRunnable.taskIdOf(task);
+                target.execute(task);
+                // 再次被拒绝的任务回到了队首，稍后再试，避免空转
+                if (overflow.peekFirst() == task) {
+                    TimeUnit.MILLISECONDS.sleep(DRAIN_WAIT_MILLIS);
+                } else if (taskId != null) {
+                    onDrain.accept(taskId);
+                }
+            } catch (InterruptedException e) {
+                // 已经取出、还没有放回线程池的任务
+                if (task != null && !overflow.contains(task)) {
+                    drop(task);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RejectedExecutionException e) {
+                // 溢出队列已满或者线程池已关闭，兜底策略也拒绝了任务
+                String taskId = TaskRunnable.taskIdOf(task);
+                if (taskId != null) {
+                    onDrain.accept(taskId);
+                }
+                drop(task);
+            } catch (Exception e) {
+                log.error("Drain overflow task failed", e);
+            }
+        }
+    }
+
+    /**
+     * 任务离开溢出队列但没有放回线程池，通知提交方按被拒绝处理
+     */
+    private void drop(Runnable task) {
+        if (!TaskRunnable.drop(task)) {
+            log.warn("{} overflow task is dropped without drop callback", TaskRunnable.taskIdOf(task));
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package scheduled.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.support.CronExpression;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleJobDTO;
+import scheduled.domain.dto.ScheduleJobStatusDTO;
+import scheduled.enums.ScheduleMisfireEnum;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <big>周期任务调度器</big>
+ * <p>按cron表达式或者固定频率触发任务，调度线程只负责计时，到点后由分发线程提交到快速/标准线程池执行，
+ * 线程池的拒绝策略阻塞或者由提交线程执行时都不会占用调度线程。
+ * 同一时刻触发的任务按任务id的哈希在分散窗口内错开，避免整分钟时大量任务同时执行；
+ * 每个任务有并发上限，上一次还在执行时本次触发等待或者丢弃。
+ * 调度线程延迟超过阈值或者达到并发上限都算错过触发，按任务的策略处理：跳过、只补一次、逐次补执行（有上限）</p>
+ *
+ * @author 13684
+ * @data 2024/8/2 上午9:40
+ */
+@Slf4j
+public class PeriodicJobScheduler {
+    /**
+     * 统计错过的触发次数时最多向后计算的次数，避免长时间停顿后遍历过多
+     */
+    private static final int MAX_MISSED_SCAN = 1_000;
+
+    private final ScheduleConfig scheduleConfig;
+    private final Function<String, ThreadPoolExecutor> executorRouter;
+    private final BiConsumer<String, Long> durationRecorder;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService dispatcher;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param scheduleConfig   配置，任务定义中为空的参数使用配置中的默认值
+     * @param executorRouter   根据任务id选择执行的线程池
+     * @param durationRecorder 记录任务执行耗时（毫秒）
+     */
+    public PeriodicJobScheduler(ScheduleConfig scheduleConfig,
+                                Function<String, ThreadPoolExecutor> executorRouter,
+                                BiConsumer<String, Long> durationRecorder) {
+        this.scheduleConfig = scheduleConfig;
+        this.executorRouter = executorRouter;
+        this.durationRecorder = durationRecorder;
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("schedule-job-%d").setDaemon(true).build());
+        this.dispatcher = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("schedule-job-dispatch-%d").setDaemon(true).build());
+    }
+
+    /**
+     * 注册周期任务，任务id已经存在时取代原来的任务（正在执行的不会中断）
+     *
+     * @param definition 任务定义
+     * @param supplier   执行任务的方法
+     */
+    public void schedule(ScheduleJobDTO definition, Supplier<Boolean> supplier) {
+        if (definition.getJobId() == null || definition.getJobId().isEmpty()) {
+            throw new IllegalArgumentException("jobId must not be empty");
+        }
+        if ((definition.getCron() == null) == (definition.getFixedRateMillis() == null)) {
+            throw new IllegalArgumentException("exactly one of cron and fixedRateMillis is required, jobId=" + definition.getJobId());
+        }
+        Job job = new Job(definition, supplier);
+        Job old = jobs.put(definition.getJobId(), job);
+        if (old != null) {
+            old.cancel();
+        }
+        job.start();
+        log.info("{} job scheduled, trigger={}, offset={}ms, misfire={}, maxConcurrency={}", job.jobId,
+                job.trigger(), job.offsetMillis, job.misfire, job.maxConcurrency);
+    }
+
+    /**
+     * 取消周期任务，正在执行的不会中断
+     *
+     * @param jobId 任务id
+     * @return 任务是否存在
+     */
+    public boolean cancel(String jobId) {
+        Job job = jobs.remove(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        log.info("{} job cancelled", jobId);
+        return true;
+    }
+
+    /**
+     * 所有周期任务的运行状态
+     */
+    public List<ScheduleJobStatusDTO> getStatus() {
+        List<ScheduleJobStatusDTO> status = new ArrayList<>(jobs.size());
+        for (Job job : jobs.values()) {
+            status.add(job.status());
+        }
+        return status;
+    }
+
+    public void shutdown() {
+        jobs.values().forEach(Job::cancel);
+        jobs.clear();
+        timer.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 按任务id的哈希计算分散窗口内的偏移，同一个任务每次触发的偏移相同
+     */
+    private static long offsetOf(String jobId, long spreadMillis) {
+        if (spreadMillis <= 0) {
+            return 0;
+        }
+        int hash = jobId.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), spreadMillis);
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private final class Job {
+        private final ScheduleJobDTO definition;
+        private final String jobId;
+        private final Supplier<Boolean> supplier;
+        private final CronExpression cron;
+        private final long periodMillis;
+        private final ScheduleMisfireEnum misfire;
+        private final int maxCatchUp;
+        private final int maxConcurrency;
+        private final Semaphore permits;
+        private final long offsetMillis;
+        // 固定频率任务的起点，触发时间为 anchor + k * period
+        private final long anchor;
+        // 等待执行的次数，由this保护
+        private int pending;
+        private volatile long nextFireTime = -1;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong misfired = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        // 已经提交到分发线程还没有开始执行，多次触发合并为一次分发
+        private final AtomicBoolean dispatchQueued = new AtomicBoolean();
+
+        private Job(ScheduleJobDTO definition, Supplier<Boolean> supplier) {
+            this.definition = definition;
+            this.jobId = definition.getJobId();
+            this.supplier = supplier;
+            this.cron = definition.getCron() != null ? CronExpression.parse(definition.getCron()) : null;
+            this.periodMillis = definition.getFixedRateMillis() != null ? definition.getFixedRateMillis() : 0;
+            if (cron == null && periodMillis <= 0) {
+                throw new IllegalArgumentException("fixedRateMillis must be positive, jobId=" + jobId);
+            }
+            this.misfire = definition.getMisfire() != null ? definition.getMisfire() : scheduleConfig.getMisfire();
+            this.maxCatchUp = Math.max(1, definition.getMaxCatchUp() != null ? definition.getMaxCatchUp() : scheduleConfig.getMisfireMaxCatchUp());
+            this.maxConcurrency = Math.max(1, definition.getMaxConcurrency() != null ? definition.getMaxConcurrency() : scheduleConfig.getJobMaxConcurrency());
+            this.permits = new Semaphore(maxConcurrency);
+            long spread = definition.getSpreadMillis() != null ? definition.getSpreadMillis() : scheduleConfig.getJobSpreadMillis();
+            long now = System.currentTimeMillis();
+            // 错开的偏移不超过触发间隔的一半，避免改变任务的执行频率
+            this.offsetMillis = offsetOf(jobId, Math.min(spread, minIntervalMillis(now) / 2));
+            this.anchor = now + offsetMillis;
+        }
+
+        private String trigger() {
+            return cron != null ? "cron=" + definition.getCron() : "fixedRate=" + periodMillis + "ms";
+        }
+
+        /**
+         * 两次触发的最小间隔，cron按接下来两次触发估算
+         */
+        private long minIntervalMillis(long now) {
+            if (cron == null) {
+                return periodMillis;
+            }
+            LocalDateTime first = cron.next(toLocalDateTime(now));
+            LocalDateTime second = first == null ? null : cron.next(first);
+            return second == null ? 0 : toMillis(second) - toMillis(first);
+        }
+
+        /**
+         * 严格晚于time的下一次触发时间（已加上偏移），没有下一次时为-1
+         */
+        private long nextAfter(long time) {
+            if (cron != null) {
+                LocalDateTime next = cron.next(toLocalDateTime(time - offsetMillis));
+                return next == null ? -1 : toMillis(next) + offsetMillis;
+            }
+            if (time < anchor) {
+                return anchor;
+            }
+            return anchor + ((time - anchor) / periodMillis + 1) * periodMillis;
+        }
+
+        private void start() {
+            long now = System.currentTimeMillis();
+            scheduleAt(cron != null ? nextAfter(now) : anchor);
+        }
+
+        private void scheduleAt(long fireTime) {
+            nextFireTime = fireTime;
+            if (cancelled) {
+                return;
+            }
+            if (fireTime < 0) {
+                log.warn("{} job has no next fire time, stop", jobId);
+                return;
+            }
+            try {
+                future = timer.schedule(() -> fire(fireTime), Math.max(0, fireTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.warn("{} job not scheduled, scheduler is shut down", jobId);
+            }
+        }
+
+        private void fire(long planned) {
+            if (cancelled) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            // 调度线程延迟超过阈值时，统计这段时间内错过的触发
+            int due = 1;
+            boolean late = now - planned > scheduleConfig.getMisfireThresholdMillis();
+            if (late) {
+                long time = planned;
+                while (due < MAX_MISSED_SCAN && (time = nextAfter(time)) > 0 && time <= now) {
+                    due++;
+                }
+                misfired.addAndGet(due);
+                log.warn("{} job misfired {} times, late {}ms, policy={}", jobId, due, now - planned, misfire);
+            }
+            synchronized (this) {
+                switch (misfire) {
+                    case Skip:
+                        if (late) {
+                            dropped.addAndGet(due);
+                        }
+                        pending = late ? 0 : 1;
+                        break;
+                    case CatchUp:
+                        pending = cap(pending + due, maxCatchUp);
+                        break;
+                    case FireOnce:
+                    default:
+                        pending = cap(pending + due, 1);
+                        break;
+                }
+            }
+            dispatch();
+            scheduleAt(nextAfter(now));
+        }
+
+        /**
+         * 交给分发线程执行等待中的触发，调度线程不提交任务
+         */
+        private void dispatch() {
+            if (cancelled || !dispatchQueued.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(() -> {
+                    dispatchQueued.set(false);
+                    drain();
+                    if (misfire == ScheduleMisfireEnum.Skip) {
+                        skipPending();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                dispatchQueued.set(false);
+                log.warn("{} job not dispatched, scheduler is shut down", jobId);
+            }
+        }
+
+        /**
+         * 达到并发上限没有执行的触发直接跳过
+         */
+        private void skipPending() {
+            int skipped;
+            synchronized (this) {
+                skipped = pending;
+                pending = 0;
+            }
+            if (skipped > 0) {
+                misfired.addAndGet(skipped);
+                dropped.addAndGet(skipped);
+                log.warn("{} job is still running, skip this fire", jobId);
+            }
+        }
+
+        private int cap(int value, int limit) {
+            if (value > limit) {
+                dropped.addAndGet(value - limit);
+                return limit;
+            }
+            return value;
+        }
+
+        /**
+         * 在并发上限内执行等待中的触发
+         */
+        private void drain() {
+            while (!cancelled) {
+                synchronized (this) {
+                    if (pending == 0 || !permits.tryAcquire()) {
+                        return;
+                    }
+                    pending--;
+                }
+                try {
+                    executorRouter.apply(jobId).execute(new TaskRunnable(jobId, this::run, this::onDropped));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    dropped.incrementAndGet();
+                    log.warn("{} job rejected: {}", jobId, e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 已经提交的执行被线程池丢弃，归还并发许可后继续执行等待中的触发
+         */
+        private void onDropped() {
+            permits.release();
+            dropped.incrementAndGet();
+            log.warn("{} job dropped by the pool", jobId);
+            dispatch();
+        }
+
+        private void run() {
+            long start = System.currentTimeMillis();
+            try {
+                if (!Boolean.TRUE.equals(supplier.get())) {
+                    log.warn("{} job returned failure", jobId);
+                }
+            } catch (Exception e) {
+                log.error("{} job fail Exception: {}", jobId, e.getMessage(), e);
+            } finally {
+                executed.incrementAndGet();
+                durationRecorder.accept(jobId, System.currentTimeMillis() - start);
+                permits.release();
+            }
+            // 执行期间积累的触发接着执行
+            dispatch();
+        }
+
+        private void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        private ScheduleJobStatusDTO status() {
+            ScheduleJobStatusDTO status = new ScheduleJobStatusDTO();
+            status.setJob(definition);
+            status.setOffsetMillis(offsetMillis);
+            long next = nextFireTime;
+            status.setNextFireTime(next < 0 ? null : toLocalDateTime(next));
+            status.setRunning(maxConcurrency - permits.availablePermits());
+            synchronized (this) {
+                status.setPending(pending);
+            }
+            status.setExecuted(executed.get());
+            status.setMisfired(misfired.get());
+            status.setDropped(dropped.get());
+            return status;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package scheduled.util;
+
+import scheduled.enums.QueueShrinkPolicyEnum;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <big>容量可调整的阻塞队列</big>
+ * <p>线程池的队列容量可以在运行时调整，调大后等待中的生产者会被唤醒；
+ * 调小到当前长度以下时按缩容策略处理超出的元素：保留（队列长度降到新容量以下后才能继续放入）或者立即取出</p>
+ *
+ * @author 13684
+ * @data 2024/7/30 上午10:20
+ */
+public interface ResizableBlockingQueue<E> extends BlockingQueue<E> {
+
+    /**
+     * 获取队列容量
+     *
+     * @return 队列容量
+     */
+    int getCapacity();
+
+    /**
+     * 设置队列容量，超出新容量的元素保留在队列中
+     *
+     * @param capacity 队列容量，必须大于0
+     */
+    void setCapacity(int capacity);
+
+    /**
+     * 设置队列容量
+     *
+     * @param capacity 队列容量，必须大于0
+     * @param policy   缩容策略
+     * @return 按DrainToLimit策略取出的元素（最早放入的），其他情况为空
+     */
+    List<E> setCapacity(int capacity, QueueShrinkPolicyEnum policy);
+
+    /**
+     * 当前实际生效的容量：容量调小后超出的元素还在队列中时，实际容纳的元素数大于配置的容量
+     *
+     * @return max(容量, 当前长度)
+     */
+    default int getEffectiveCapacity() {
+        return Math.max(getCapacity(), size());
+    }
+}
@@ -36,6 +36,7 @@
 package scheduled.util;
 
 import lombok.Getter;
+import scheduled.enums.QueueShrinkPolicyEnum;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -43,8 +44,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.AbstractQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
@@ -82,7 +85,7 @@ import java.util.function.Consumer;
  * @param <E> the type of elements held in this collection
  */
 public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
-        implements BlockingQueue<E>, java.io.Serializable {
+        implements ResizableBlockingQueue<E>, java.io.Serializable {
     private static final long serialVersionUID = -6903933977591709194L;
 
     /*
@@ -142,9 +145,33 @@ public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
     private volatile int capacity;
 
     public void setCapacity(int capacity) {
+        setCapacity(capacity, QueueShrinkPolicyEnum.Keep);
+    }
+
+    /**
+     * Changes the capacity bound. Producers blocked on a full queue are
+     * woken when the capacity grows. When it shrinks below the current
+     * size, {@link QueueShrinkPolicyEnum#Keep} leaves the excess elements
+     * queued (producers block until the size drops below the new bound),
+     * while {@link QueueShrinkPolicyEnum#DrainToLimit} removes the oldest
+     * excess elements and returns them to the caller.
+     *
+     * @return the drained elements, empty unless drained
+     */
+    public List<E> setCapacity(int capacity, QueueShrinkPolicyEnum policy) {
         if (capacity <= 0)
             throw new IllegalArgumentException();
+        int old = this.capacity;
         this.capacity = capacity;
+        List<E> drained = new ArrayList<E>();
+        if (capacity > old) {
+            signalAllNotFull();
+        } else if (policy == QueueShrinkPolicyEnum.DrainToLimit) {
+            int excess = count.get() - capacity;
+            if (excess > 0)
+                drainTo(drained, excess);
+        }
+        return drained;
     }
 
     /** Current number of elements */
@@ -201,6 +228,20 @@ public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Signals all waiting puts, used when the capacity grows and more than
+     * one slot may have become available at once.
+     */
+    private void signalAllNotFull() {
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
     /**
      * Links node at end of queue.
      *
@@ -320,8 +361,9 @@ public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
     /**
      * Returns the number of additional elements that this queue can ideally
      * (in the absence of memory or resource constraints) accept without
-     * blocking. This is always equal to the initial capacity of this queue
-     * less the current {@code size} of this queue.
+     * blocking. This is always equal to the current capacity of this queue
+     * less the current {@code size} of this queue, and never negative even
+     * after the capacity has been shrunk below the current size.
      *
      * <p>Note that you <em>cannot</em> always tell if an attempt to insert
      * an element will succeed by inspecting {@code remainingCapacity}
@@ -329,7 +371,7 @@ public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
      * insert or remove an element.
      */
     public int remainingCapacity() {
-        return capacity - count.get();
+        return Math.max(0, capacity - count.get());
     }
 
     /**
@@ -763,7 +805,10 @@ public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E>
                 if (i > 0) {
                     // assert h.item == null;
                     head = h;
-                    signalNotFull = (count.getAndAdd(-i) == capacity);
+                    // the queue may hold more than capacity after a shrink,
+                    // so signal on crossing the bound rather than on equality
+                    int before = count.getAndAdd(-i);
+                    signalNotFull = before >= capacity && before - i < capacity;
                 }
             }
         } finally {
@@ -0,0 +1,100 @@
+package scheduled.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <big>重试熔断器</big>
+ * <p>按熔断key统计连续失败次数，达到阈值后打开熔断，期间该key的所有重试暂停（不计入重试次数）；
+ * 打开时间结束后放行一次试探，试探成功则关闭熔断，失败则重新打开</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:00
+ */
+public class RetryCircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold 连续失败多少次后打开熔断
+     * @param openMillis       熔断打开的时间（毫秒）
+     */
+    public RetryCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(0, openMillis);
+    }
+
+    /**
+     * 申请执行一次重试
+     *
+     * @param key 熔断key，为null时总是允许
+     * @return 0表示允许执行，大于0表示需要暂停的时间（毫秒）
+     */
+    public long acquire(String key) {
+        if (key == null) {
+            return 0;
+        }
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            return 0;
+        }
+        synchronized (circuit) {
+            long now = System.currentTimeMillis();
+            if (circuit.openUntil > now) {
+                return circuit.openUntil - now;
+            }
+            if (circuit.probing) {
+                // 试探还没有结果，其余任务等一个打开周期后再来
+                return Math.max(1, openMillis);
+            }
+            if (circuit.openUntil > 0) {
+                circuit.probing = true;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 记录一次执行结果
+     *
+     * @param key     熔断key，为null时忽略
+     * @param success 是否成功
+     */
+    public void record(String key, boolean success) {
+        if (key == null) {
+            return;
+        }
+        if (success) {
+            circuits.remove(key);
+            return;
+        }
+        Circuit circuit = circuits.computeIfAbsent(key, k -> new Circuit());
+        synchronized (circuit) {
+            circuit.failures++;
+            if (circuit.probing || circuit.failures >= failureThreshold) {
+                circuit.openUntil = System.currentTimeMillis() + openMillis;
+                circuit.probing = false;
+            }
+        }
+    }
+
+    /**
+     * 熔断打开的剩余时间（毫秒），没有打开时返回0
+     */
+    public long remainingMillis(String key) {
+        Circuit circuit = key == null ? null : circuits.get(key);
+        if (circuit == null) {
+            return 0;
+        }
+        synchronized (circuit) {
+            return Math.max(0, circuit.openUntil - System.currentTimeMillis());
+        }
+    }
+
+    private static final class Circuit {
+        private int failures;
+        private long openUntil;
+        private boolean probing;
+    }
+}
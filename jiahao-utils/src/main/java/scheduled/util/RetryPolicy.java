@@ -0,0 +1,145 @@
+package scheduled.util;
+
+import scheduled.config.ScheduleConfig;
+import scheduled.enums.RetryBackoffEnum;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>任务的重试策略</big>
+ * <p>决定重试间隔和最大重试次数：固定间隔；指数退避（初始间隔 × 倍数^已重试次数）；
+ * 去相关抖动（在初始间隔和上一次间隔的3倍之间随机），后两种都不超过最大间隔。
+ * 抖动让同时失败的任务错开重试时间，下游恢复时不会被整齐的重试流量再次压垮。
+ * 设置了熔断key的任务，在同一个key连续失败过多时暂停重试，熔断恢复后再继续</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:00
+ */
+public final class RetryPolicy {
+    private final RetryBackoffEnum backoff;
+    private final long initialMillis;
+    private final long maxMillis;
+    private final double multiplier;
+    /**
+     * 最大重试次数，小于0时使用全局配置
+     */
+    private final int maxRetryTimes;
+    /**
+     * 熔断key，共用同一个下游的任务使用同一个key，为null时不熔断
+     */
+    private final String circuitKey;
+
+    private RetryPolicy(RetryBackoffEnum backoff, long initialMillis, long maxMillis, double multiplier,
+                        int maxRetryTimes, String circuitKey) {
+        if (initialMillis < 0 || maxMillis < initialMillis || multiplier < 1) {
+            throw new IllegalArgumentException("require 0 <= initial <= max and multiplier >= 1");
+        }
+        this.backoff = backoff;
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.multiplier = multiplier;
+        this.maxRetryTimes = maxRetryTimes;
+        this.circuitKey = circuitKey;
+    }
+
+    /**
+     * 固定间隔
+     */
+    public static RetryPolicy fixed(long interval, TimeUnit unit) {
+        long millis = unit.toMillis(interval);
+        return new RetryPolicy(RetryBackoffEnum.Fixed, millis, millis, 1, -1, null);
+    }
+
+    /**
+     * 指数退避
+     *
+     * @param initial    第一次重试的间隔
+     * @param max        最大间隔
+     * @param unit       时间单位
+     * @param multiplier 每次失败后间隔的倍数
+     */
+    public static RetryPolicy exponential(long initial, long max, TimeUnit unit, double multiplier) {
+        return new RetryPolicy(RetryBackoffEnum.Exponential, unit.toMillis(initial), unit.toMillis(max), multiplier, -1, null);
+    }
+
+    /**
+     * 去相关抖动
+     *
+     * @param base 最小间隔
+     * @param max  最大间隔
+     * @param unit 时间单位
+     */
+    public static RetryPolicy decorrelatedJitter(long base, long max, TimeUnit unit) {
+        return new RetryPolicy(RetryBackoffEnum.DecorrelatedJitter, unit.toMillis(base), unit.toMillis(max), 3, -1, null);
+    }
+
+    /**
+     * 全局配置的固定间隔，没有指定重试策略的任务使用
+     */
+    public static RetryPolicy fromConfig(ScheduleConfig config) {
+        return fixed(config.getRetryInterval(), config.getRetryIntervalUnit());
+    }
+
+    /**
+     * 指定最大重试次数
+     */
+    public RetryPolicy withMaxRetryTimes(int maxRetryTimes) {
+        return new RetryPolicy(backoff, initialMillis, maxMillis, multiplier, maxRetryTimes, circuitKey);
+    }
+
+    /**
+     * 指定熔断key
+     */
+    public RetryPolicy withCircuit(String circuitKey) {
+        return new RetryPolicy(backoff, initialMillis, maxMillis, multiplier, maxRetryTimes,
+                circuitKey == null || circuitKey.isEmpty() ? null : circuitKey);
+    }
+
+    /**
+     * 计算下一次重试的间隔
+     *
+     * @param retryTimes    已经重试的次数
+     * @param previousDelay 上一次的间隔（毫秒），不知道时传0
+     * @return 下一次重试的间隔（毫秒）
+     */
+    public long nextDelayMillis(int retryTimes, long previousDelay) {
+        switch (backoff) {
+            case Exponential:
+                return exponentialMillis(retryTimes);
+            case DecorrelatedJitter:
+                // sleep = min(max, random(base, previous * 3))，不知道上一次间隔时按指数退避估算
+                long previous = previousDelay > 0 ? previousDelay : exponentialMillis(Math.max(0, retryTimes - 1));
+                long upper = Math.min(maxMillis, (long) Math.min(Long.MAX_VALUE / 2.0, previous * multiplier));
+                return upper <= initialMillis ? initialMillis : ThreadLocalRandom.current().nextLong(initialMillis, upper + 1);
+            default:
+                return initialMillis;
+        }
+    }
+
+    /**
+     * 实际生效的最大重试次数
+     */
+    public int maxRetryTimes(ScheduleConfig config) {
+        return maxRetryTimes >= 0 ? maxRetryTimes : config.getMaxRetryTimes();
+    }
+
+    public RetryBackoffEnum getBackoff() {
+        return backoff;
+    }
+
+    public String getCircuitKey() {
+        return circuitKey;
+    }
+
+    private long exponentialMillis(int retryTimes) {
+        double delay = initialMillis * Math.pow(multiplier, retryTimes);
+        return delay >= maxMillis ? maxMillis : (long) delay;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" + backoff + ", initial=" + initialMillis + "ms, max=" + maxMillis + "ms, multiplier=" + multiplier
+                + ", maxRetryTimes=" + maxRetryTimes + ", circuit=" + circuitKey + "}";
+    }
+}
@@ -0,0 +1,42 @@
+package scheduled.util;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <big>重试调度器</big>
+ * <p>ScheduledUtil通过它重复执行失败的任务，间隔可以固定也可以每次重新计算（退避），可以选择定时线程池或时间轮实现</p>
+ *
+ * @author 13684
+ * @data 2024/7/22 下午3:10
+ */
+public interface RetryScheduler {
+
+    /**
+     * 按固定间隔重复执行任务，上一次执行结束后再等待delay开始下一次
+     *
+     * @param task         任务
+     * @param initialDelay 首次执行的延迟
+     * @param delay        两次执行之间的间隔
+     * @param unit         时间单位
+     * @return 用于取消任务的Future
+     */
+    Future<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit);
+
+    /**
+     * 重复执行任务，每次执行结束后调用nextDelay计算到下一次执行的间隔
+     *
+     * @param task         任务
+     * @param initialDelay 首次执行的延迟
+     * @param nextDelay    计算下一次执行的间隔，在任务执行结束后调用
+     * @param unit         时间单位
+     * @return 用于取消任务的Future
+     */
+    Future<?> scheduleWithDynamicDelay(Runnable task, long initialDelay, LongSupplier nextDelay, TimeUnit unit);
+
+    /**
+     * 关闭调度器，已经在执行的任务不会被打断
+     */
+    void shutdown();
+}
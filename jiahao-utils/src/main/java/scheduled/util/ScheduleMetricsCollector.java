@@ -0,0 +1,175 @@
+package scheduled.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleHistogramDTO;
+import scheduled.domain.dto.ScheduleMetricsDTO;
+import scheduled.domain.dto.SchedulePoolMetricsDTO;
+import scheduled.domain.dto.ScheduleTaskMetricsDTO;
+import scheduled.enums.SchedulePoolEnum;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>任务监控</big>
+ * <p>汇总每个线程池的线程数、队列长度、提交/完成/拒绝次数、排队和执行时间分布，每个任务的耗时分布，
+ * 以及本节点待重试的任务。订阅后按固定间隔推送快照，所有订阅者共用一次采集，没有订阅者时不采集</p>
+ *
+ * @author 13684
+ * @data 2024/8/7 上午10:10
+ */
+@Slf4j
+@Component
+public class ScheduleMetricsCollector {
+    /**
+     * 快照中最多返回的待重试任务id数
+     */
+    private static final int MAX_RETRY_TASKS = 100;
+
+    @Resource
+    private ScheduleConfig scheduleConfig;
+
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService publisher;
+
+    @PreDestroy
+    public void destroy() {
+        synchronized (this) {
+            if (publisher != null) {
+                publisher.shutdownNow();
+            }
+        }
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    /**
+     * 采集当前的监控快照
+     */
+    public ScheduleMetricsDTO snapshot() {
+        ScheduleMetricsDTO metrics = new ScheduleMetricsDTO();
+        metrics.setTime(LocalDateTime.now());
+        List<SchedulePoolMetricsDTO> pools = new ArrayList<>();
+        for (SchedulePoolEnum pool : SchedulePoolEnum.values()) {
+            pools.add(poolMetrics(pool));
+        }
+        metrics.setPools(pools);
+        List<ScheduleTaskMetricsDTO> tasks = new ArrayList<>();
+        for (Map.Entry<String, TaskProfile> entry : ScheduledUtil.getTaskProfiles().entrySet()) {
+            tasks.add(new ScheduleTaskMetricsDTO(entry.getKey(), entry.getValue().isQuick(),
+                    histogram(entry.getValue().getHistogram())));
+        }
+        metrics.setTasks(tasks);
+        Set<String> backlog = ScheduledUtil.getRetryBacklog();
+        List<String> retryTasks = new ArrayList<>(Math.min(backlog.size(), MAX_RETRY_TASKS));
+        for (String taskId : backlog) {
+            if (retryTasks.size() >= MAX_RETRY_TASKS) {
+                break;
+            }
+            retryTasks.add(taskId);
+        }
+        metrics.setRetryBacklog(backlog.size());
+        metrics.setRetryTasks(retryTasks);
+        return metrics;
+    }
+
+    /**
+     * 订阅监控快照，订阅后立即推送一次，之后按配置的间隔推送
+     *
+     * @return 推送快照的连接
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(scheduleConfig.getMetricsStreamTimeoutMillis());
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        startPublisher();
+        send(emitter, snapshot());
+        return emitter;
+    }
+
+    private synchronized void startPublisher() {
+        if (publisher != null) {
+            return;
+        }
+        long interval = Math.max(100, scheduleConfig.getMetricsStreamIntervalMillis());
+        publisher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("schedule-metrics-%d").setDaemon(true).build());
+        publisher.scheduleWithFixedDelay(this::publish, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            ScheduleMetricsDTO metrics = snapshot();
+            for (SseEmitter emitter : subscribers) {
+                send(emitter, metrics);
+            }
+        } catch (Exception e) {
+            log.error("Schedule metrics publish failed!", e);
+        }
+    }
+
+    private void send(SseEmitter emitter, ScheduleMetricsDTO metrics) {
+        try {
+            emitter.send(SseEmitter.event().name("metrics").data(metrics));
+        } catch (IOException | IllegalStateException e) {
+            // 连接已经断开
+            subscribers.remove(emitter);
+        }
+    }
+
+    private static SchedulePoolMetricsDTO poolMetrics(SchedulePoolEnum pool) {
+        ThreadPoolExecutor executor = pool.getThreadPoolExecutor();
+        SchedulePoolMetricsDTO metrics = new SchedulePoolMetricsDTO();
+        metrics.setPool(pool.name());
+        metrics.setDesc(pool.getDesc());
+        metrics.setCorePoolSize(executor.getCorePoolSize());
+        metrics.setMaximumPoolSize(executor.getMaximumPoolSize());
+        metrics.setPoolSize(executor.getPoolSize());
+        metrics.setActiveCount(executor.getActiveCount());
+        metrics.setLargestPoolSize(executor.getLargestPoolSize());
+        metrics.setQueueSize(executor.getQueue().size());
+        if (executor.getQueue() instanceof ResizableBlockingQueue) {
+            ResizableBlockingQueue<Runnable> queue = (ResizableBlockingQueue<Runnable>) executor.getQueue();
+            metrics.setQueueCapacity(queue.getCapacity());
+            metrics.setEffectiveQueueCapacity(queue.getEffectiveCapacity());
+        }
+        metrics.setCompleted(executor.getCompletedTaskCount());
+        if (executor instanceof MonitoredThreadPoolExecutor) {
+            MonitoredThreadPoolExecutor monitored = (MonitoredThreadPoolExecutor) executor;
+            metrics.setSubmitted(monitored.getSubmittedCount());
+            metrics.setRejected(monitored.getRejectedCount());
+            metrics.setRejectPolicy(monitored.getDelegateRejectedExecutionHandler().getClass().getSimpleName());
+            metrics.setWaitMillis(histogram(monitored.getWaitHistogram()));
+            metrics.setRunMillis(histogram(monitored.getRunHistogram()));
+        } else {
+            metrics.setSubmitted(executor.getTaskCount());
+            metrics.setRejectPolicy(executor.getRejectedExecutionHandler().getClass().getSimpleName());
+        }
+        return metrics;
+    }
+
+    private static ScheduleHistogramDTO histogram(LatencyHistogram histogram) {
+        return new ScheduleHistogramDTO(histogram.count(), histogram.percentile(0.5), histogram.percentile(0.9),
+                histogram.percentile(0.99), histogram.max(), histogram.buckets());
+    }
+}
@@ -0,0 +1,214 @@
+package scheduled.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.SchedulePoolDecisionDTO;
+import scheduled.enums.SchedulePoolEnum;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <big>线程池自动调整</big>
+ * <p>按固定周期对每个线程池采样（排队时间p99、队列长度、拒绝次数、平均执行时间、进程CPU使用率），
+ * 加性增加、乘性减少（AIMD）：出现积压且CPU未饱和时按步长增加线程，增加的下限由利特尔法则
+ * （所需线程数 = 到达速率 × 平均执行时间）估算；持续空闲时线程数减半，但不低于启动时的配置。
+ * 出现拒绝或队列接近写满时队列容量扩大为1.5倍，空闲时逐步恢复。所有调整都在配置的上限内，
+ * 每次调整都会打印日志并保留最近的记录</p>
+ *
+ * @author 13684
+ * @data 2024/7/26 上午10:15
+ */
+@Slf4j
+@Component
+public class SchedulePoolAutoSizer {
+    /**
+     * 保留的调整记录数
+     */
+    private static final int MAX_DECISIONS = 200;
+
+    @Resource
+    private ScheduleConfig scheduleConfig;
+
+    private ScheduledExecutorService sampler;
+    /**
+     * 线程池启动时的参数，缩容不低于该值
+     */
+    private final Map<SchedulePoolEnum, int[]> baselines = new EnumMap<>(SchedulePoolEnum.class);
+    private final Deque<SchedulePoolDecisionDTO> decisions = new ArrayDeque<>(MAX_DECISIONS);
+
+    @PostConstruct
+    public void init() {
+        if (!scheduleConfig.isAutoSize()) {
+            return;
+        }
+        for (SchedulePoolEnum pool : SchedulePoolEnum.values()) {
+            ThreadPoolExecutor executor = pool.getThreadPoolExecutor();
+            baselines.put(pool, new int[]{executor.getCorePoolSize(), executor.getMaximumPoolSize(), capacityOf(executor)});
+        }
+        long interval = Math.max(100, scheduleConfig.getAutoSizeIntervalMillis());
+        sampler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("schedule-autosize-%d").setDaemon(true).build());
+        sampler.scheduleWithFixedDelay(this::adjustAll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Schedule pool auto sizing enabled, interval={}ms", interval);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    /**
+     * 最近的调整记录，按时间先后排列
+     */
+    public List<SchedulePoolDecisionDTO> getDecisions() {
+        synchronized (decisions) {
+            return new ArrayList<>(decisions);
+        }
+    }
+
+    private void adjustAll() {
+        double cpuLoad = cpuLoad();
+        for (SchedulePoolEnum pool : SchedulePoolEnum.values()) {
+            try {
+                adjust(pool, cpuLoad);
+            } catch (Exception e) {
+                log.error("Auto size pool failed! type={}", pool, e);
+            }
+        }
+    }
+
+    private void adjust(SchedulePoolEnum pool, double cpuLoad) {
+        ThreadPoolExecutor executor = pool.getThreadPoolExecutor();
+        if (!(executor instanceof MonitoredThreadPoolExecutor)) {
+            return;
+        }
+        MonitoredThreadPoolExecutor.Sample sample = ((MonitoredThreadPoolExecutor) executor).sample();
+        int[] baseline = baselines.get(pool);
+        int core = executor.getCorePoolSize();
+        int max = executor.getMaximumPoolSize();
+        int capacity = capacityOf(executor);
+        int newCore = core;
+        int newMax = max;
+        int newCapacity = capacity;
+        long targetWait = scheduleConfig.getAutoSizeTargetWaitMillis();
+        int maxThreads = Math.max(baseline[1], scheduleConfig.getAutoSizeMaxThreads());
+        String reason = null;
+
+        boolean congested = sample.rejected > 0 || sample.waitP99Millis > targetWait
+                || (capacity > 0 && sample.queueSize > capacity / 2);
+        boolean idle = sample.queueSize == 0 && sample.rejected == 0
+                && sample.waitP99Millis <= targetWait / 4 && sample.activeCount * 2 < core;
+        if (congested) {
+            if (cpuLoad < scheduleConfig.getAutoSizeCpuHigh()) {
+                // 加性增加，积压严重时直接补到利特尔法则估算的线程数
+                int required = (int) Math.ceil(sample.arrivalRate() * sample.runMeanMillis / 1000);
+                newCore = Math.min(maxThreads, Math.max(core + Math.max(1, scheduleConfig.getAutoSizeStep()), required));
+                newMax = Math.max(max, Math.min(maxThreads, newCore + (baseline[1] - baseline[0])));
+                reason = "congested";
+            } else {
+                reason = "congested, cpu saturated";
+            }
+            if (capacity > 0 && (sample.rejected > 0 || sample.queueSize * 5 > capacity * 4)) {
+                newCapacity = Math.min(Math.max(capacity, scheduleConfig.getAutoSizeMaxQueueCapacity()),
+                        Math.max(capacity + 1, capacity * 3 / 2));
+            }
+        } else if (idle) {
+            // 乘性减少，不低于启动时的配置
+            newCore = Math.max(baseline[0], core / 2);
+            newMax = Math.max(baseline[1], Math.max(newCore, max / 2));
+            if (capacity > baseline[2]) {
+                newCapacity = Math.max(baseline[2], capacity * 2 / 3);
+            }
+            reason = "idle";
+        }
+        if (newCore == core && newMax == max && newCapacity == capacity) {
+            if (reason != null && congested) {
+                log.warn("Pool {} congested but not resized, reason={}, waitP99={}ms, queue={}, cpu={}",
+                        pool, reason, sample.waitP99Millis, sample.queueSize, cpuLoad);
+            }
+            return;
+        }
+        // 扩容时先调大最大线程数，缩容时先调小核心线程数，保证 core <= max
+        if (newMax >= max) {
+            executor.setMaximumPoolSize(newMax);
+            executor.setCorePoolSize(newCore);
+        } else {
+            executor.setCorePoolSize(newCore);
+            executor.setMaximumPoolSize(newMax);
+        }
+        if (newCapacity != capacity) {
+            ((ResizableBlockingQueue<Runnable>) executor.getQueue()).setCapacity(newCapacity);
+        }
+        record(pool, reason, sample, cpuLoad, core, newCore, max, newMax, capacity, newCapacity);
+    }
+
+    private void record(SchedulePoolEnum pool, String reason, MonitoredThreadPoolExecutor.Sample sample, double cpuLoad,
+                        int core, int newCore, int max, int newMax, int capacity, int newCapacity) {
+        SchedulePoolDecisionDTO decision = new SchedulePoolDecisionDTO();
+        decision.setTime(LocalDateTime.now());
+        decision.setPool(pool.name());
+        decision.setReason(reason);
+        decision.setArrivalRate(sample.arrivalRate());
+        decision.setWaitP99Millis(sample.waitP99Millis);
+        decision.setRunMeanMillis(sample.runMeanMillis);
+        decision.setQueueSize(sample.queueSize);
+        decision.setRejected(sample.rejected);
+        decision.setCpuLoad(cpuLoad);
+        decision.setOldCorePoolSize(core);
+        decision.setNewCorePoolSize(newCore);
+        decision.setOldMaximumPoolSize(max);
+        decision.setNewMaximumPoolSize(newMax);
+        decision.setOldQueueCapacity(capacity);
+        decision.setNewQueueCapacity(newCapacity);
+        synchronized (decisions) {
+            if (decisions.size() >= MAX_DECISIONS) {
+                decisions.pollFirst();
+            }
+            decisions.addLast(decision);
+        }
+        log.info("Auto size pool {}: {}, corePoolSize {}->{}, maximumPoolSize {}->{}, queueCapacity {}->{}, " +
+                        "arrivalRate={}/s, runMean={}ms, waitP99={}ms, queue={}, rejected={}, cpu={}",
+                pool, reason, core, newCore, max, newMax, capacity, newCapacity,
+                String.format("%.2f", sample.arrivalRate()), String.format("%.1f", sample.runMeanMillis),
+                sample.waitP99Millis, sample.queueSize, sample.rejected, String.format("%.2f", cpuLoad));
+    }
+
+    private static int capacityOf(ThreadPoolExecutor executor) {
+        return executor.getQueue() instanceof ResizableBlockingQueue
+                ? ((ResizableBlockingQueue<Runnable>) executor.getQueue()).getCapacity() : 0;
+    }
+
+    /**
+     * 进程CPU使用率（0~1），不支持时用系统负载除以处理器数估算
+     */
+    private static double cpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+            if (load >= 0) {
+                return load;
+            }
+        }
+        double average = os.getSystemLoadAverage();
+        return average < 0 ? 0 : Math.min(1, average / os.getAvailableProcessors());
+    }
+}
@@ -3,12 +3,14 @@ package scheduled.util;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <big>自定义拒绝策略</big>
- * <p></p>
+ * <p>阻塞等待队列空位，超过等待时间或者等待时被中断则拒绝任务，提交任务的线程不会无限期挂起</p>
  *
  * @author 13684
  * @data 2024/7/8 下午5:00
@@ -16,18 +18,44 @@ import java.util.concurrent.ThreadPoolExecutor;
 @Component
 @Slf4j
 public class ScheduleRejected implements RejectedExecutionHandler {
+    /**
+     * 默认等待时间（毫秒）
+     */
+    private static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final long timeoutMillis;
+
+    public ScheduleRejected() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
 
     /**
-     * 当线程池满的时候，直接调用队列的put方法来进行阻塞
+     * @param timeoutMillis 等待队列空位的最长时间（毫秒）
+     */
+    public ScheduleRejected(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 当线程池满的时候，调用队列的offer方法在超时时间内阻塞等待
      * @param r the runnable task requested to be executed
      * @param executor the executor attempting to execute this task
      */
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
         try {
-            executor.getQueue().put(r);
+            if (executor.getQueue().offer(r, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
         } catch (InterruptedException e) {
-            // 不会被打断
+            // 保留中断状态，交给调用方处理
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
         }
+        log.warn("Task rejected after waiting {}ms for queue space, taskId={}", timeoutMillis, TaskRunnable.taskIdOf(r));
+        throw new RejectedExecutionException("Queue is still full after " + timeoutMillis + "ms");
     }
 }
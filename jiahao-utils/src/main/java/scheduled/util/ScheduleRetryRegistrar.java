@@ -0,0 +1,49 @@
+package scheduled.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import scheduled.annotation.ScheduleRetry;
+
+/**
+ * <big>重试策略注解的注册</big>
+ * <p>扫描bean中标注了@ScheduleRetry的方法，按taskId注册到ScheduledUtil</p>
+ *
+ * @author 13684
+ * @data 2024/8/1 上午10:00
+ */
+@Slf4j
+@Component
+public class ScheduleRetryRegistrar implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        ReflectionUtils.doWithMethods(AopUtils.getTargetClass(bean), method -> {
+            ScheduleRetry retry = method.getAnnotation(ScheduleRetry.class);
+            if (retry == null) {
+                return;
+            }
+            RetryPolicy policy = toPolicy(retry);
+            ScheduledUtil.registerRetryPolicy(retry.taskId(), policy);
+            log.info("{} task retry policy registered: {}", retry.taskId(), policy);
+        });
+        return bean;
+    }
+
+    private static RetryPolicy toPolicy(ScheduleRetry retry) {
+        RetryPolicy policy;
+        switch (retry.backoff()) {
+            case Fixed:
+                policy = RetryPolicy.fixed(retry.initialInterval(), retry.unit());
+                break;
+            case DecorrelatedJitter:
+                policy = RetryPolicy.decorrelatedJitter(retry.initialInterval(), retry.maxInterval(), retry.unit());
+                break;
+            default:
+                policy = RetryPolicy.exponential(retry.initialInterval(), retry.maxInterval(), retry.unit(), retry.multiplier());
+        }
+        return policy.withMaxRetryTimes(retry.maxRetryTimes()).withCircuit(retry.circuit());
+    }
+}
@@ -3,14 +3,36 @@ package scheduled.util;
 import cn.hutool.core.date.LocalDateTimeUtil;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import scheduled.config.ScheduleConfig;
+import scheduled.domain.dto.ScheduleJobDTO;
+import scheduled.domain.dto.ScheduleJobStatusDTO;
+import scheduled.domain.dto.ScheduleRetryDTO;
+import scheduled.enums.RetrySchedulerEnum;
+import scheduled.enums.ScheduleCoalesceEnum;
+import scheduled.enums.SchedulePoolEnum;
+import scheduled.enums.ScheduleQueueEnum;
+import scheduled.enums.ScheduleRejectPolicyEnum;
+import scheduled.store.JournalScheduleStore;
+import scheduled.store.NoopScheduleStore;
+import scheduled.store.RedisScheduleStore;
+import scheduled.store.ScheduleStore;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -26,63 +48,419 @@ import java.util.function.Supplier;
 public class ScheduledUtil {
     @Resource
     private ScheduleConfig scheduleConfig;
-    private static ScheduledExecutorService service;
+    @Autowired
+    private ObjectProvider<RedissonClient> redissonClientProvider;
+    private static RetryScheduler service;
+    // 重试状态存储
+    private static ScheduleStore store = new NoopScheduleStore();
+    // 已注册的任务，重启后根据任务id找到执行任务的方法
+    private static final Map<String, Supplier<Boolean>> SUPPLIER_MAP = new ConcurrentHashMap<>();
+    // 重启后恢复的待重试任务，等待注册执行任务的方法
+    private static final Map<String, ScheduleRetryDTO> RESTORED_MAP = new ConcurrentHashMap<>();
+    // 集群重试执行器，未开启集群模式时为null
+    private static ClusterRetryExecutor cluster;
+    // 周期任务调度器
+    private static PeriodicJobScheduler jobScheduler;
     // 任务集合
-    private static final Map<String, ScheduledFuture<?>> FUTURE_MAP = new ConcurrentHashMap<>();
-    // 长短任务的区分时间 10s
-    private static final Long MAX_TIME = 10L;
-    // 任务执行的默认耗时（用来处理任务第一次运行）
-    private static final Long DEFAULT_TIME = 100L;
-    // 记录执行时间，每次记录任务执行时间，用来分类
-    private static final Map<String, Long> TASK_TIME_MAP = new ConcurrentHashMap<>();
+    private static final Map<String, Future<?>> FUTURE_MAP = new ConcurrentHashMap<>();
+    // 任务的耗时画像，每次记录任务执行时间，按分位耗时分类（没有记录的任务走标准线程池）
+    private static final Map<String, TaskProfile> TASK_TIME_MAP = new ConcurrentHashMap<>();
+    // 溢出队列拒绝策略，关闭时需要停止后台线程
+    private static final List<OverflowRejected> OVERFLOW_HANDLERS = new CopyOnWriteArrayList<>();
+    // 正在排队或者执行的合并任务，同一个任务id同时只有一次执行
+    private static final Map<String, InFlight> IN_FLIGHT_MAP = new ConcurrentHashMap<>();
+    // 任务的重试策略，没有注册的任务使用全局配置的固定间隔
+    private static final Map<String, RetryPolicy> RETRY_POLICY_MAP = new ConcurrentHashMap<>();
+    // 重试熔断器，按熔断key暂停连续失败的重试
+    private static volatile RetryCircuitBreaker circuitBreaker = new RetryCircuitBreaker(5, 60_000);
+    // 分类用的配置，供静态方法使用
+    private static ScheduleConfig config;
+    // 线程池当前使用的队列，启动时按配置重建线程池
+    private static ScheduleQueueEnum queueType = ScheduleQueueEnum.Linked;
     // 快速线程池，用来处理执行时间小于10s的任务（为了区分长任务和短任务）
-    private static final ThreadPoolExecutor QUICK_HANDLER_EXECUTOR = new ThreadPoolExecutor(2, 4, 30,
-            TimeUnit.SECONDS, new ResizeLinkedBlockingQueue<>(500),
-            new ThreadFactoryBuilder().setNameFormat("quickHandler-pool-%d").setDaemon(true).build(),
-            new ScheduleRejected());
+    private static volatile ThreadPoolExecutor QUICK_HANDLER_EXECUTOR = createQuickHandlerExecutor(queueType, 2, 4, 500);
     // 标准线程池，执行长任务，并且在开机时执行所有任务并统计时间
-    private static final ThreadPoolExecutor THREAD_POOL_EXECUTOR = new ThreadPoolExecutor(2, 5, 30,
-            TimeUnit.SECONDS, new ResizeLinkedBlockingQueue<>(500),
-            new ThreadFactoryBuilder().setNameFormat("standardHandler-pool-%d").setDaemon(true).build(),
-            new ScheduleRejected());
+    private static volatile ThreadPoolExecutor THREAD_POOL_EXECUTOR = createThreadPoolExecutor(queueType, 2, 5, 500);
+    // 虚拟线程池，执行阻塞在HTTP、数据库调用上的任务，并发数由信号量限制
+    private static volatile VirtualThreadPoolExecutor VIRTUAL_HANDLER_EXECUTOR = createVirtualHandlerExecutor(queueType, 256, 500);
+
+    private static ThreadPoolExecutor createQuickHandlerExecutor(ScheduleQueueEnum type, int core, int max, int capacity) {
+        return new MonitoredThreadPoolExecutor(core, max, 30, TimeUnit.SECONDS, createQueue(type, capacity),
+                new ThreadFactoryBuilder().setNameFormat("quickHandler-pool-%d").setDaemon(true).build(),
+                new ScheduleRejected());
+    }
+
+    private static ThreadPoolExecutor createThreadPoolExecutor(ScheduleQueueEnum type, int core, int max, int capacity) {
+        return new MonitoredThreadPoolExecutor(core, max, 30, TimeUnit.SECONDS, createQueue(type, capacity),
+                new ThreadFactoryBuilder().setNameFormat("standardHandler-pool-%d").setDaemon(true).build(),
+                new ScheduleRejected());
+    }
+
+    private static VirtualThreadPoolExecutor createVirtualHandlerExecutor(ScheduleQueueEnum type, int concurrency, int capacity) {
+        return new VirtualThreadPoolExecutor("virtualHandler-", concurrency, createQueue(type, capacity), new ScheduleRejected());
+    }
+
+    private static ResizableBlockingQueue<Runnable> createQueue(ScheduleQueueEnum type, int capacity) {
+        return type == ScheduleQueueEnum.SegmentedArray
+                ? new SegmentedArrayBlockingQueue<>(capacity) : new ResizeLinkedBlockingQueue<>(capacity);
+    }
+
     public static ThreadPoolExecutor getThreadPoolExecutor() {
         return THREAD_POOL_EXECUTOR;
     }
     public static ThreadPoolExecutor getQuickHandlerExecutor() {
         return QUICK_HANDLER_EXECUTOR;
     }
+    public static ThreadPoolExecutor getVirtualHandlerExecutor() {
+        return VIRTUAL_HANDLER_EXECUTOR;
+    }
     // 消费者
     private final DConsumer<String, ScheduledRunnable> cff = (taskId, scheduledRunnable) -> {
-        LocalDateTime startTime = LocalDateTime.now();
+        long startTime = System.nanoTime();
         log.info("{} task start", taskId);
         try {
             // 接受任务执行的返回值
             Boolean apply = scheduledRunnable.supplier.get();
+            circuitBreaker.record(scheduledRunnable.policy.getCircuitKey(), Boolean.TRUE.equals(apply));
+            scheduledRunnable.result.complete(apply);
             // 如果执行失败就重试
             if (!apply) {
-                addTask(scheduledRunnable);
+                retry(scheduledRunnable);
+            } else if (cluster != null) {
+                cluster.release(taskId);
             }
         } catch (Exception e) {
             log.error("{} task fail Exception: {}", taskId, e.getMessage(), e);
+            circuitBreaker.record(scheduledRunnable.policy.getCircuitKey(), false);
+            scheduledRunnable.result.completeExceptionally(e);
+            if (cluster != null) {
+                cluster.release(taskId);
+            }
         }finally {
             log.info("{} task finish!", taskId);
             // 记录当前任务执行时间
-            TASK_TIME_MAP.put(taskId, LocalDateTimeUtil.between(startTime, LocalDateTime.now()).getSeconds());
+            recordTaskTime(taskId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
         }
     };
 
 
     @PostConstruct
     public void init() {
-        // 初始化线程工厂 设置为守护线程
-        ThreadFactory threadFactory = new ThreadFactoryBuilder()
-                .setNameFormat("schedule-pool-%d").setDaemon(true).build();
-        // 如果定时线程池已经存在则先关闭
+        // 如果重试调度器已经存在则先关闭
         if (service != null) {
             service.shutdown();
         }
+        config = scheduleConfig;
+        circuitBreaker = new RetryCircuitBreaker(scheduleConfig.getCircuitFailureThreshold(), scheduleConfig.getCircuitOpenMillis());
+        rebuildExecutors(scheduleConfig.getQueueType());
+        VIRTUAL_HANDLER_EXECUTOR.setMaximumPoolSize(Math.max(1, scheduleConfig.getVirtualConcurrency()));
+        applyRejectPolicies();
+        service = createRetryScheduler();
+        // 恢复持久化的任务耗时和待重试任务
+        store.close();
+        store = createStore();
+        store.loadTaskTimes().forEach((taskId, millis) ->
+                TASK_TIME_MAP.computeIfAbsent(taskId, key -> new TaskProfile()).seed(millis, scheduleConfig));
+        for (ScheduleRetryDTO retry : store.loadRetries()) {
+            RESTORED_MAP.put(retry.getTaskId(), retry);
+            // 执行方法已经注册的任务直接恢复，其余的等待registerTask
+            Supplier<Boolean> supplier = SUPPLIER_MAP.get(retry.getTaskId());
+            if (supplier != null) {
+                restore(retry.getTaskId(), supplier);
+            }
+        }
+        log.info("ScheduledService restored {} task times, {} retry tasks", TASK_TIME_MAP.size(), RESTORED_MAP.size());
+        // 集群模式 重试交给所有节点共享的Redis延迟队列
+        if (cluster != null) {
+            cluster.shutdown();
+            cluster = null;
+        }
+        if (scheduleConfig.isCluster()) {
+            RedissonClient redissonClient = redissonClientProvider.getIfAvailable();
+            if (redissonClient == null) {
+                throw new IllegalStateException("schedule.cluster=true requires a RedissonClient bean");
+            }
+            cluster = new ClusterRetryExecutor(redissonClient, scheduleConfig, ScheduledUtil::clusterSupplier,
+                    ScheduledUtil::selectExecutor, ScheduledUtil::recordTaskTime, ScheduledUtil::clusterRetryDelay);
+        }
+        if (jobScheduler != null) {
+            jobScheduler.shutdown();
+        }
+        jobScheduler = new PeriodicJobScheduler(scheduleConfig, ScheduledUtil::selectExecutor, ScheduledUtil::recordTaskTime);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (jobScheduler != null) {
+            jobScheduler.shutdown();
+        }
+        OVERFLOW_HANDLERS.forEach(OverflowRejected::shutdown);
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        store.close();
+    }
+
+    /**
+     * 队列类型和当前不同时按原来的参数重建线程池，旧线程池执行完已经提交的任务后关闭
+     *
+     * @param type 队列类型
+     */
+    private static synchronized void rebuildExecutors(ScheduleQueueEnum type) {
+        if (type == queueType) {
+            return;
+        }
+        ThreadPoolExecutor quick = QUICK_HANDLER_EXECUTOR;
+        ThreadPoolExecutor standard = THREAD_POOL_EXECUTOR;
+        VirtualThreadPoolExecutor virtual = VIRTUAL_HANDLER_EXECUTOR;
+        QUICK_HANDLER_EXECUTOR = createQuickHandlerExecutor(type, quick.getCorePoolSize(), quick.getMaximumPoolSize(),
+                ((ResizableBlockingQueue<Runnable>) quick.getQueue()).getCapacity());
+        THREAD_POOL_EXECUTOR = createThreadPoolExecutor(type, standard.getCorePoolSize(), standard.getMaximumPoolSize(),
+                ((ResizableBlockingQueue<Runnable>) standard.getQueue()).getCapacity());
+        VIRTUAL_HANDLER_EXECUTOR = createVirtualHandlerExecutor(type, virtual.getMaximumPoolSize(),
+                ((ResizableBlockingQueue<Runnable>) virtual.getQueue()).getCapacity());
+        quick.shutdown();
+        standard.shutdown();
+        virtual.shutdown();
+        queueType = type;
+        log.info("Schedule pools rebuilt with {} queue", type);
+    }
+
+    /**
+     * 按配置为每个线程池设置拒绝策略
+     */
+    private void applyRejectPolicies() {
+        OVERFLOW_HANDLERS.forEach(OverflowRejected::shutdown);
+        OVERFLOW_HANDLERS.clear();
+        for (SchedulePoolEnum pool : SchedulePoolEnum.values()) {
+            ScheduleRejectPolicyEnum policy = scheduleConfig.getRejectPolicy().getOrDefault(pool, ScheduleRejectPolicyEnum.Block);
+            pool.getThreadPoolExecutor().setRejectedExecutionHandler(createRejected(pool, policy));
+            log.info("Pool {} reject policy: {}", pool, policy);
+        }
+    }
+
+    private RejectedExecutionHandler createRejected(SchedulePoolEnum pool, ScheduleRejectPolicyEnum policy) {
+        ShedRejected shed = new ShedRejected(pool.name());
+        switch (policy) {
+            case CallerRuns:
+                return new CallerRunsRejected(scheduleConfig.getRejectCallerRunsBudget(), shed);
+            case Spill:
+                return new SpillRejected(() -> spillTarget(pool), shed);
+            case Overflow:
+                OverflowRejected overflow = new OverflowRejected(pool.name(), scheduleConfig.getRejectOverflowCapacity(), shed,
+                        ScheduledUtil::persistOverflow, ScheduledUtil::removeOverflow);
+                OVERFLOW_HANDLERS.add(overflow);
+                return overflow;
+            case Shed:
+                return shed;
+            default:
+                return new ScheduleRejected(scheduleConfig.getRejectBlockTimeoutMillis());
+        }
+    }
+
+    /**
+     * 转移任务的目标线程池，快速线程池和标准线程池互相转移，虚拟线程池转到标准线程池
+     */
+    private static ThreadPoolExecutor spillTarget(SchedulePoolEnum pool) {
+        return pool == SchedulePoolEnum.ThreadPool ? QUICK_HANDLER_EXECUTOR : THREAD_POOL_EXECUTOR;
+    }
+
+    /**
+     * 任务进入溢出队列时持久化，重启后作为待重试任务恢复
+     */
+    private static void persistOverflow(String taskId) {
+        if (!isOverflowPersistent(taskId)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long deadline = now + config.getMaxRetryIntervalUnit().toMillis(config.getMaxRetryInterval());
+        store.saveRetry(new ScheduleRetryDTO(taskId, 0, deadline, now));
+    }
+
+    /**
+     * 任务离开溢出队列时删除持久化记录，已经有待重试记录的任务保留
+     */
+    private static void removeOverflow(String taskId) {
+        if (isOverflowPersistent(taskId)) {
+            store.removeRetry(taskId);
+        }
+    }
+
+    /**
+     * 溢出的任务是否需要持久化：只有注册了执行方法的任务重启后才能恢复，
+     * 已经有待重试记录的任务不覆盖，避免重置重试次数
+     */
+    private static boolean isOverflowPersistent(String taskId) {
+        return SUPPLIER_MAP.containsKey(taskId) && !FUTURE_MAP.containsKey(taskId) && !RESTORED_MAP.containsKey(taskId);
+    }
+
+    /**
+     * 根据任务的耗时分类选择线程池，短任务放到快速线程池中，长任务和没有记录的任务放到标准线程池中，
+     * 开启虚拟线程后长任务和没有记录的任务放到虚拟线程池中
+     *
+     * @param taskId 任务id
+     * @return 执行任务的线程池
+     */
+    private static ThreadPoolExecutor selectExecutor(String taskId) {
+        TaskProfile profile = TASK_TIME_MAP.get(taskId);
+        if (profile != null && profile.isQuick()) {
+            return QUICK_HANDLER_EXECUTOR;
+        }
+        return config != null && config.isVirtualThreads() ? VIRTUAL_HANDLER_EXECUTOR : THREAD_POOL_EXECUTOR;
+    }
+
+    /**
+     * 记录任务执行耗时，并保存分位耗时用于重启后恢复分类
+     *
+     * @param taskId 任务id
+     * @param millis 执行耗时（毫秒）
+     */
+    private static void recordTaskTime(String taskId, Long millis) {
+        long percentile = TASK_TIME_MAP.computeIfAbsent(taskId, key -> new TaskProfile()).record(millis, config);
+        store.saveTaskTime(taskId, percentile);
+    }
+
+    /**
+     * 所有任务的耗时画像（只读）
+     */
+    public static Map<String, TaskProfile> getTaskProfiles() {
+        return Collections.unmodifiableMap(TASK_TIME_MAP);
+    }
+
+    /**
+     * 本节点待重试的任务id（只读）
+     */
+    public static Set<String> getRetryBacklog() {
+        return Collections.unmodifiableSet(FUTURE_MAP.keySet());
+    }
+
+    /**
+     * 注册任务的重试策略，getSupplier和重启后恢复的重试都会使用
+     *
+     * @param taskId 任务id
+     * @param policy 重试策略
+     */
+    public static void registerRetryPolicy(String taskId, RetryPolicy policy) {
+        RETRY_POLICY_MAP.put(taskId, policy);
+    }
+
+    /**
+     * 获取任务的重试策略，没有注册时使用全局配置的固定间隔
+     */
+    private static RetryPolicy retryPolicy(String taskId) {
+        RetryPolicy policy = RETRY_POLICY_MAP.get(taskId);
+        return policy != null ? policy : RetryPolicy.fromConfig(config);
+    }
+
+    /**
+     * 集群重试的间隔，熔断打开时延后到熔断结束
+     */
+    private static long clusterRetryDelay(String taskId, int retryTimes) {
+        RetryPolicy policy = retryPolicy(taskId);
+        return Math.max(policy.nextDelayMillis(retryTimes, 0), circuitBreaker.remainingMillis(policy.getCircuitKey()));
+    }
+
+    /**
+     * 集群重试的执行方法，记录熔断结果
+     */
+    private static Supplier<Boolean> clusterSupplier(String taskId) {
+        Supplier<Boolean> supplier = SUPPLIER_MAP.get(taskId);
+        if (supplier == null) {
+            return null;
+        }
+        String circuitKey = retryPolicy(taskId).getCircuitKey();
+        return () -> {
+            boolean success = false;
+            try {
+                success = Boolean.TRUE.equals(supplier.get());
+                return success;
+            } finally {
+                circuitBreaker.record(circuitKey, success);
+            }
+        };
+    }
+
+    /**
+     * 执行失败后重试，集群模式下放入共享的延迟队列，否则在本节点定时重试
+     *
+     * @param retryTask 需要重试的任务对象
+     */
+    private void retry(ScheduledRunnable retryTask) {
+        if (cluster != null) {
+            cluster.scheduleRetry(retryTask.taskId, retryTask.retryTimes, LocalDateTimeUtil.toEpochMilli(retryTask.deadlineTime));
+            return;
+        }
+        addTask(retryTask);
+    }
+
+    private RetryScheduler createRetryScheduler() {
+        if (scheduleConfig.getRetryScheduler() == RetrySchedulerEnum.TimingWheel) {
+            // 时间轮 添加和取消都是O(1)，适合大量待重试的任务
+            return new HashedWheelRetryScheduler(scheduleConfig.getWheelTickMillis(), scheduleConfig.getWheelSize(),
+                    scheduleConfig.getWheelWorkerThreads());
+        }
+        // 初始化线程工厂 设置为守护线程
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("schedule-pool-%d").setDaemon(true).build();
         // 创建定时任务线程池 异常处理直接抛出异常
-        service = new ScheduledThreadPoolExecutor(2, threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        return new ExecutorRetryScheduler(new ScheduledThreadPoolExecutor(2, threadFactory, new ThreadPoolExecutor.AbortPolicy()));
+    }
+
+    private ScheduleStore createStore() {
+        switch (scheduleConfig.getStore()) {
+            case Journal:
+                return new JournalScheduleStore(Paths.get(scheduleConfig.getJournalPath()),
+                        scheduleConfig.getJournalSizeMb() * 1024L * 1024L);
+            case Redis:
+                RedissonClient redissonClient = redissonClientProvider.getIfAvailable();
+                if (redissonClient == null) {
+                    throw new IllegalStateException("schedule.store=Redis requires a RedissonClient bean");
+                }
+                return new RedisScheduleStore(redissonClient, scheduleConfig.getStoreKeyPrefix(), storeNodeId());
+            default:
+                return new NoopScheduleStore();
+        }
+    }
+
+    /**
+     * Redis存储的节点标识，未配置时使用主机名
+     */
+    private String storeNodeId() {
+        String nodeId = scheduleConfig.getStoreNodeId();
+        if (nodeId != null && !nodeId.isEmpty()) {
+            return nodeId;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("schedule.store=Redis requires schedule.storeNodeId when the host name is unknown", e);
+        }
+    }
+
+    /**
+     * 注册任务的执行方法，重启后恢复的待重试任务需要注册后才能继续重试
+     * 建议在启动时（例如@PostConstruct中）为所有会调用getSupplier的任务注册
+     *
+     * @param taskId   任务id
+     * @param supplier 执行任务的方法
+     */
+    public void registerTask(String taskId, Supplier<Boolean> supplier) {
+        SUPPLIER_MAP.put(taskId, supplier);
+        restore(taskId, supplier);
+    }
+
+    /**
+     * 恢复重启前未完成的重试，按原来的下一次重试时间继续
+     */
+    private void restore(String taskId, Supplier<Boolean> supplier) {
+        ScheduleRetryDTO retry = RESTORED_MAP.remove(taskId);
+        if (retry == null) {
+            return;
+        }
+        ScheduledRunnable scheduledRunnable = new ScheduledRunnable(taskId, supplier,
+                LocalDateTimeUtil.of(retry.getDeadlineTime()), retry.getRetryTimes());
+        addTask(scheduledRunnable, Math.max(0, retry.getNextRunTime() - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        log.info("{} task retry restored, retryTimes={}", taskId, retry.getRetryTimes());
     }
 
     /**
@@ -91,17 +469,30 @@ public class ScheduledUtil {
      * @param retryTask 需要重试的任务对象
      */
     private void addTask(ScheduledRunnable retryTask) {
+        addTask(retryTask, retryTask.nextDelay(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 添加定时任务，指定首次执行的延迟
+     *
+     * @param retryTask    需要重试的任务对象
+     * @param initialDelay 首次执行的延迟
+     * @param unit         延迟的时间单位
+     */
+    private void addTask(ScheduledRunnable retryTask, long initialDelay, TimeUnit unit) {
         // 如果重试任务已经在map中则直接返回
         if (FUTURE_MAP.get(retryTask.taskId) != null) {
             log.error("ScheduledService add task Failed! {} task already exist", retryTask.taskId);
             return;
         }
-        // 将任务添加到定时服务中
-        ScheduledFuture<?> scheduledFuture = service.scheduleWithFixedDelay(retryTask, scheduleConfig.getRetryInterval(),
-                scheduleConfig.getRetryInterval(), scheduleConfig.getRetryIntervalUnit());
+        // 将任务添加到定时服务中，每次重试后按重试策略计算下一次的间隔
+        Future<?> scheduledFuture = service.scheduleWithDynamicDelay(retryTask, unit.toMillis(initialDelay),
+                retryTask::getNextDelayMillis, TimeUnit.MILLISECONDS);
 
         // 将任务添加到重试任务中
         FUTURE_MAP.put(retryTask.taskId, scheduledFuture);
+        // 持久化重试状态
+        retryTask.persist(System.currentTimeMillis() + unit.toMillis(initialDelay));
     }
 
 
@@ -115,7 +506,7 @@ public class ScheduledUtil {
             log.error("ScheduledService remove task Failed! {} task not exist", taskId);
             return;
         }
-        ScheduledFuture<?> scheduledFuture = FUTURE_MAP.get(taskId);
+        Future<?> scheduledFuture = FUTURE_MAP.get(taskId);
         // 取消当前任务，但并不强制取消正在执行的任务
         boolean cancel = scheduledFuture.cancel(false);
         if (!cancel) {
@@ -123,47 +514,321 @@ public class ScheduledUtil {
         }
         // 将当前任务从任务队列中删除
         FUTURE_MAP.remove(taskId);
+        store.removeRetry(taskId);
     }
 
     /**
-     * 执行重试的定时任务
+     * 执行重试的定时任务，失败后按指定的重试策略重试
      *
      * @param taskId   任务id
      * @param supplier 执行任务的方法
+     * @param policy   重试策略
+     * @return 第一次执行的结果
      */
-    public void getSupplier(String taskId, Supplier<Boolean> supplier) {
+    public CompletableFuture<Boolean> getSupplier(String taskId, Supplier<Boolean> supplier, RetryPolicy policy) {
+        registerRetryPolicy(taskId, policy);
+        return getSupplier(taskId, supplier);
+    }
+
+    /**
+     * 执行重试的定时任务，重复提交时按配置的合并模式处理
+     *
+     * @param taskId   任务id
+     * @param supplier 执行任务的方法
+     * @return 第一次执行的结果
+     */
+    public CompletableFuture<Boolean> getSupplier(String taskId, Supplier<Boolean> supplier) {
+        return getSupplier(taskId, supplier, scheduleConfig.getCoalesce());
+    }
+
+    /**
+     * 执行重试的定时任务，同一个任务id的上一次执行还在排队或者运行时按合并模式处理：
+     * Share合并到正在执行的任务并共享结果；ShareAndRerun在正在执行的任务完成后再执行一次（使用最后提交的方法），
+     * 期间的所有提交共享这一次的结果
+     *
+     * @param taskId   任务id
+     * @param supplier 执行任务的方法
+     * @param coalesce 合并模式
+     * @return 第一次执行的结果（失败后的重试不影响结果），集群中其他节点正在执行或者被拒绝时为false
+     */
+    public CompletableFuture<Boolean> getSupplier(String taskId, Supplier<Boolean> supplier, ScheduleCoalesceEnum coalesce) {
+        if (coalesce == null || coalesce == ScheduleCoalesceEnum.None) {
+            return submit(taskId, supplier);
+        }
+        InFlight[] leader = new InFlight[1];
+        InFlight flight = IN_FLIGHT_MAP.compute(taskId, (key, current) -> {
+            if (current == null) {
+                leader[0] = new InFlight(supplier, new CompletableFuture<>());
+                return leader[0];
+            }
+            current.supplier = supplier;
+            if (coalesce == ScheduleCoalesceEnum.ShareAndRerun && current.rerun == null) {
+                current.rerun = new CompletableFuture<>();
+            }
+            return current;
+        });
+        if (leader[0] == null) {
+            log.info("{} task is in flight, coalesced ({})", taskId, coalesce);
+            return coalesce == ScheduleCoalesceEnum.ShareAndRerun ? flight.rerun : flight.result;
+        }
+        runInFlight(taskId, leader[0]);
+        return leader[0].result;
+    }
+
+    /**
+     * 执行合并的任务，完成后先移出正在执行的集合再通知结果，之后的提交会重新执行；有待执行的重跑时接着执行
+     */
+    private void runInFlight(String taskId, InFlight flight) {
+        submit(taskId, flight.supplier).whenComplete((value, e) -> {
+            InFlight[] next = new InFlight[1];
+            IN_FLIGHT_MAP.compute(taskId, (key, current) -> {
+                if (current != flight) {
+                    return current;
+                }
+                if (current.rerun == null) {
+                    return null;
+                }
+                next[0] = new InFlight(current.supplier, current.rerun);
+                return next[0];
+            });
+            if (e != null) {
+                flight.result.completeExceptionally(e);
+            } else {
+                flight.result.complete(value);
+            }
+            if (next[0] != null) {
+                log.info("{} task rerun for coalesced submissions", taskId);
+                runInFlight(taskId, next[0]);
+            }
+        });
+    }
+
+    /**
+     * 提交任务到线程池执行，失败后按重试策略重试
+     *
+     * @param taskId   任务id
+     * @param supplier 执行任务的方法
+     * @return 第一次执行的结果
+     */
+    private CompletableFuture<Boolean> submit(String taskId, Supplier<Boolean> supplier) {
+        // 重新执行的任务取代重启前未完成的重试
+        if (RESTORED_MAP.remove(taskId) != null) {
+            store.removeRetry(taskId);
+        }
+        // 集群模式下同一个任务同时只在一个节点执行，其他节点的重试也需要找到执行方法
+        if (cluster != null) {
+            SUPPLIER_MAP.put(taskId, supplier);
+            if (!cluster.claim(taskId)) {
+                log.info("{} task is running on another node, skip", taskId);
+                return CompletableFuture.completedFuture(false);
+            }
+        }
         // 创建重试任务
         ScheduledRunnable scheduledRunnable = new ScheduledRunnable(taskId, supplier, LocalDateTime.now().plusSeconds(scheduleConfig.getMaxRetryIntervalUnit().toSeconds(scheduleConfig.getMaxRetryInterval())));
-        // 如果执行时间小于10s，放到快速线程池中
-        if (TASK_TIME_MAP.getOrDefault(taskId, DEFAULT_TIME) <= MAX_TIME) {
-            QUICK_HANDLER_EXECUTOR.execute(() -> cff.accept(taskId, scheduledRunnable));
-        }else {
-            THREAD_POOL_EXECUTOR.execute(() -> cff.accept(taskId, scheduledRunnable));
+        // 如果执行时间小于10s，放到快速线程池中，否则放到标准线程池中
+        try {
+            selectExecutor(taskId).execute(new TaskRunnable(taskId, () -> cff.accept(taskId, scheduledRunnable),
+                    () -> retryRejected(scheduledRunnable, "dropped by the pool")));
+        } catch (RejectedExecutionException e) {
+            retryRejected(scheduledRunnable, e.getMessage());
+        }
+        return scheduledRunnable.result;
+    }
+
+    /**
+     * 被线程池拒绝或者丢弃的任务：结果记为失败，按重试间隔稍后执行
+     */
+    private void retryRejected(ScheduledRunnable scheduledRunnable, String reason) {
+        // 线程池过载时不阻塞调用方，按重试间隔稍后执行
+        log.warn("{} task rejected: {}, retry later", scheduledRunnable.taskId, reason);
+        scheduledRunnable.result.complete(false);
+        retry(scheduledRunnable);
+    }
+
+
+    /**
+     * 按任务的耗时分类把一次性任务提交到线程池执行并记录耗时，不重试
+     *
+     * @param taskId 任务id
+     * @param task   任务
+     * @throws RejectedExecutionException 线程池拒绝
+     */
+    public void execute(String taskId, Runnable task) {
+        execute(taskId, task, null);
+    }
+
+    /**
+     * 按任务的耗时分类把一次性任务提交到线程池执行并记录耗时，不重试
+     *
+     * @param taskId    任务id
+     * @param task      任务
+     * @param onDropped 任务被线程池接收后又被丢弃（例如队列缩容）时的回调，可以为null
+     * @throws RejectedExecutionException 线程池拒绝
+     */
+    public void execute(String taskId, Runnable task, Runnable onDropped) {
+        selectExecutor(taskId).execute(new TaskRunnable(taskId, () -> {
+            long startTime = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                recordTaskTime(taskId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            }
+        }, onDropped));
+    }
+
+    /**
+     * 处理队列缩容时取出的任务，在后台线程中执行，不阻塞调用方：
+     * 带丢弃回调的任务按被拒绝处理（重试任务稍后重试，周期任务归还并发许可），
+     * 其余任务交给线程池的拒绝策略，仍然被拒绝的任务丢弃
+     *
+     * @param executor 缩容的线程池
+     * @param drained  从队列中取出的任务
+     */
+    public static void handBackDrained(ThreadPoolExecutor executor, List<Runnable> drained) {
+        if (drained.isEmpty()) {
+            return;
         }
+        Thread thread = new Thread(() -> {
+            int dropped = 0;
+            for (Runnable task : drained) {
+                if (TaskRunnable.drop(task)) {
+                    continue;
+                }
+                try {
+                    executor.getRejectedExecutionHandler().rejectedExecution(task, executor);
+                } catch (RejectedExecutionException e) {
+                    dropped++;
+                }
+            }
+            log.warn("Queue shrink handed back {} tasks, {} dropped", drained.size(), dropped);
+        }, "schedule-queue-drain");
+        thread.setDaemon(true);
+        thread.start();
     }
 
+    /**
+     * 注册cron周期任务，其余参数使用配置中的默认值
+     *
+     * @param jobId    任务id
+     * @param cron     cron表达式（秒 分 时 日 月 周）
+     * @param supplier 执行任务的方法
+     */
+    public void scheduleCron(String jobId, String cron, Supplier<Boolean> supplier) {
+        scheduleJob(new ScheduleJobDTO(jobId, cron, null, null, null, null, null), supplier);
+    }
+
+    /**
+     * 注册固定频率的周期任务，其余参数使用配置中的默认值
+     *
+     * @param jobId    任务id
+     * @param period   触发间隔
+     * @param unit     间隔单位
+     * @param supplier 执行任务的方法
+     */
+    public void scheduleFixedRate(String jobId, long period, TimeUnit unit, Supplier<Boolean> supplier) {
+        scheduleJob(new ScheduleJobDTO(jobId, null, unit.toMillis(period), null, null, null, null), supplier);
+    }
+
+    /**
+     * 注册周期任务，按耗时分类在快速/标准线程池中执行，失败不重试（等待下一次触发）
+     *
+     * @param job      任务定义
+     * @param supplier 执行任务的方法
+     */
+    public void scheduleJob(ScheduleJobDTO job, Supplier<Boolean> supplier) {
+        jobScheduler.schedule(job, supplier);
+    }
+
+    /**
+     * 取消周期任务
+     *
+     * @param jobId 任务id
+     * @return 任务是否存在
+     */
+    public boolean cancelJob(String jobId) {
+        return jobScheduler.cancel(jobId);
+    }
+
+    /**
+     * 所有周期任务的运行状态
+     */
+    public List<ScheduleJobStatusDTO> getJobStatus() {
+        return jobScheduler.getStatus();
+    }
 
     // 消费者接口
     private interface DConsumer<T, R> {
         void accept(T t, R r);
     }
 
+    // 正在执行的合并任务
+    private static class InFlight {
+        // 最后一次提交的执行方法，重跑时使用
+        private volatile Supplier<Boolean> supplier;
+        // 本次执行的结果
+        private final CompletableFuture<Boolean> result;
+        // 执行期间有ShareAndRerun提交时不为空，本次完成后再执行一次并用它通知结果
+        private CompletableFuture<Boolean> rerun;
+
+        private InFlight(Supplier<Boolean> supplier, CompletableFuture<Boolean> result) {
+            this.supplier = supplier;
+            this.result = result;
+        }
+    }
+
     public class ScheduledRunnable implements Runnable, Serializable {
         private int retryTimes;
         private final String taskId;
         private final Supplier<Boolean> supplier;
         private final LocalDateTime deadlineTime;
+        private final RetryPolicy policy;
+        // 上一次按重试策略计算的间隔（毫秒），去相关抖动需要
+        private long lastBackoffMillis;
+        // 到下一次重试的间隔（毫秒），由重试调度器在每次执行后读取
+        private volatile long nextDelayMillis;
+        // 第一次执行的结果
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
 
         public ScheduledRunnable(String taskId, Supplier<Boolean> supplier, LocalDateTime deadlineTime) {
+            this(taskId, supplier, deadlineTime, 0);
+        }
+
+        public ScheduledRunnable(String taskId, Supplier<Boolean> supplier, LocalDateTime deadlineTime, int retryTimes) {
             this.taskId = taskId;
             this.supplier = supplier;
             this.deadlineTime = deadlineTime;
-            retryTimes = 0;
+            this.retryTimes = retryTimes;
+            this.policy = retryPolicy(taskId);
+        }
+
+        private long getNextDelayMillis() {
+            return nextDelayMillis;
         }
+
+        /**
+         * 按重试策略计算下一次重试的间隔，熔断打开时延后到熔断结束
+         *
+         * @return 间隔（毫秒）
+         */
+        private long nextDelay() {
+            lastBackoffMillis = policy.nextDelayMillis(retryTimes, lastBackoffMillis);
+            nextDelayMillis = Math.max(lastBackoffMillis, circuitBreaker.remainingMillis(policy.getCircuitKey()));
+            return nextDelayMillis;
+        }
+
+        /**
+         * 持久化当前的重试状态
+         *
+         * @param nextRunTime 下一次重试的时间（毫秒时间戳）
+         */
+        private void persist(long nextRunTime) {
+            store.saveRetry(new ScheduleRetryDTO(taskId, retryTimes, LocalDateTimeUtil.toEpochMilli(deadlineTime), nextRunTime));
+        }
+
         @Override
         public void run() {
             // 如果重试次数超过最大次数或者超过最大重试时间则移除任务
-            if (retryTimes++ >= scheduleConfig.getMaxRetryTimes()) {
+            if (retryTimes >= policy.maxRetryTimes(scheduleConfig)) {
                 remove(taskId);
                 log.error("{} task retry times is over max retry times!", taskId);
                 return;
@@ -172,11 +837,28 @@ public class ScheduledUtil {
                 log.error("{} task retry times is over deadline time!", taskId);
                 return;
             }
+            // 熔断打开时暂停重试，不计入重试次数
+            long pause = circuitBreaker.acquire(policy.getCircuitKey());
+            if (pause > 0) {
+                nextDelayMillis = pause;
+                persist(System.currentTimeMillis() + pause);
+                log.info("{} task retry paused {}ms by circuit {}", taskId, pause, policy.getCircuitKey());
+                return;
+            }
+            retryTimes++;
             log.info("{} task retry", taskId);
             // 执行任务 如果执行成功则移除任务
-            boolean retryResult = supplier.get();
+            boolean retryResult = false;
+            try {
+                retryResult = Boolean.TRUE.equals(supplier.get());
+            } catch (Exception e) {
+                log.error("{} task retry fail Exception: {}", taskId, e.getMessage(), e);
+            }
+            circuitBreaker.record(policy.getCircuitKey(), retryResult);
             if (retryResult) {
                 remove(taskId);
+            } else {
+                persist(System.currentTimeMillis() + nextDelay());
             }
         }
     }
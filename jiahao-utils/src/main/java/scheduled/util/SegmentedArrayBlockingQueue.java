@@ -0,0 +1,507 @@
+package scheduled.util;
+
+import scheduled.enums.QueueShrinkPolicyEnum;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <big>分段数组无锁队列</big>
+ * <p>多生产者多消费者队列，元素存放在链接起来的定长数组段中，一个段可以存放SEGMENT_SIZE个元素，
+ * 只有跨段时才分配内存，不会像链表队列那样每个元素分配一个节点。
+ * 生产者和消费者各自通过原子自增领取下标，放入和取出都不加锁；容量通过CAS预占计数限制，容量可以在运行时调整。
+ * 只有队列空或者满、需要阻塞等待时才使用锁和条件变量，没有等待者时不会加锁。
+ * 消费者领取的下标对应的生产者还没有写入时短暂自旋等待（生产者已经领取了下标，写入只差一步）</p>
+ *
+ * @author 13684
+ * @data 2024/7/30 上午10:20
+ */
+public class SegmentedArrayBlockingQueue<E> extends AbstractQueue<E> implements ResizableBlockingQueue<E> {
+    /**
+     * 每段的元素个数
+     */
+    private static final int SEGMENT_SIZE = 1024;
+    /**
+     * 被remove(Object)删除的元素占位
+     */
+    private static final Object REMOVED = new Object();
+    /**
+     * 自旋多少次后让出CPU
+     */
+    private static final int SPINS = 64;
+
+    private volatile int capacity;
+    /**
+     * 已预占的容量（包括还没有写入的元素），用于限制容量
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+    /**
+     * 已写入且还没有被领取的元素个数，消费者领取到计数后才领取下标，保证下标对应的元素一定会被写入
+     */
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicLong enqueueIndex = new AtomicLong();
+    private final AtomicLong dequeueIndex = new AtomicLong();
+    private final AtomicReference<Segment> headSegment;
+    private final AtomicReference<Segment> tailSegment;
+
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+    private final AtomicInteger emptyWaiters = new AtomicInteger();
+    private final AtomicInteger fullWaiters = new AtomicInteger();
+
+    /**
+     * @param capacity 队列容量
+     */
+    public SegmentedArrayBlockingQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        Segment first = new Segment(0);
+        this.headSegment = new AtomicReference<>(first);
+        this.tailSegment = new AtomicReference<>(first);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        setCapacity(capacity, QueueShrinkPolicyEnum.Keep);
+    }
+
+    @Override
+    public List<E> setCapacity(int capacity, QueueShrinkPolicyEnum policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        int old = this.capacity;
+        this.capacity = capacity;
+        List<E> drained = new ArrayList<>();
+        if (capacity > old) {
+            signal(notFull, fullWaiters, true);
+        } else if (policy == QueueShrinkPolicyEnum.DrainToLimit) {
+            int excess = reserved.get() - capacity;
+            if (excess > 0) {
+                drainTo(drained, excess);
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public int getEffectiveCapacity() {
+        return Math.max(capacity, reserved.get());
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        if (!reserve()) {
+            return false;
+        }
+        enqueue(e);
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        if (!reserve()) {
+            awaitReserve(-1);
+        }
+        enqueue(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        if (!reserve() && !awaitReserve(unit.toNanos(timeout))) {
+            return false;
+        }
+        enqueue(e);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        return acquire() ? dequeue() : null;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        if (!acquire()) {
+            awaitAcquire(-1);
+        }
+        return dequeue();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!acquire() && !awaitAcquire(unit.toNanos(timeout))) {
+            return null;
+        }
+        return dequeue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        for (Segment segment = headSegment.get(); segment != null; segment = segment.next.get()) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                Object item = segment.slots.get(i);
+                if (item != null && item != REMOVED) {
+                    return (E) item;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return available.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return available.get() == 0;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - reserved.get());
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E item;
+        while (n < maxElements && (item = poll()) != null) {
+            c.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 删除指定元素，元素所在的位置替换为占位，消费者领取到该位置时跳过
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (Segment segment = headSegment.get(); segment != null; segment = segment.next.get()) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                Object item = segment.slots.get(i);
+                if (item == null || item == REMOVED || !(item == o || o.equals(item))) {
+                    continue;
+                }
+                // 先领取一个可用计数，代替被删除元素的消费者
+                if (!acquire()) {
+                    return false;
+                }
+                if (segment.slots.compareAndSet(i, item, REMOVED)) {
+                    release();
+                    return true;
+                }
+                // 元素已经被消费者取走，归还计数
+                available.incrementAndGet();
+                signal(notEmpty, emptyWaiters, false);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 弱一致的迭代器，遍历创建时队列中元素的快照，remove从队列中删除当前元素
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator(snapshot().iterator());
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<E> snapshot() {
+        List<E> items = new ArrayList<>();
+        for (Segment segment = headSegment.get(); segment != null; segment = segment.next.get()) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                Object item = segment.slots.get(i);
+                if (item != null && item != REMOVED) {
+                    items.add((E) item);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 预占一个容量
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 领取一个已写入的元素
+     */
+    private boolean acquire() {
+        while (true) {
+            int current = available.get();
+            if (current == 0) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还预占的容量
+     */
+    private void release() {
+        reserved.decrementAndGet();
+        signal(notFull, fullWaiters, false);
+    }
+
+    private void enqueue(E e) {
+        Segment start = tailSegment.get();
+        long index = enqueueIndex.getAndIncrement();
+        Segment segment = segmentFor(start, index);
+        advance(tailSegment, segment);
+        segment.slots.set((int) (index - segment.base), e);
+        available.incrementAndGet();
+        signal(notEmpty, emptyWaiters, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        while (true) {
+            Segment start = headSegment.get();
+            long index = dequeueIndex.getAndIncrement();
+            Segment segment = segmentFor(start, index);
+            int slot = (int) (index - segment.base);
+            Object item;
+            int spins = 0;
+            // 已经领取了计数，下标对应的元素一定会被写入，生产者写入前短暂自旋
+            while ((item = segment.slots.get(slot)) == null) {
+                if (++spins > SPINS) {
+                    Thread.yield();
+                }
+            }
+            item = segment.slots.getAndSet(slot, null);
+            if (segment.consumed.incrementAndGet() == SEGMENT_SIZE) {
+                advanceHead();
+            }
+            if (item == REMOVED) {
+                // 被删除的元素已经由删除方归还了容量，继续领取下一个下标
+                continue;
+            }
+            release();
+            return (E) item;
+        }
+    }
+
+    /**
+     * 从start开始找到下标所在的段，段不存在时创建
+     */
+    private Segment segmentFor(Segment start, long index) {
+        Segment segment = start;
+        while (index >= segment.base + SEGMENT_SIZE) {
+            Segment next = segment.next.get();
+            if (next == null) {
+                next = new Segment(segment.base + SEGMENT_SIZE);
+                if (!segment.next.compareAndSet(null, next)) {
+                    next = segment.next.get();
+                }
+            }
+            segment = next;
+        }
+        return segment;
+    }
+
+    /**
+     * 头部的段全部消费完后后移，旧段随之被回收
+     */
+    private void advanceHead() {
+        Segment head = headSegment.get();
+        while (head.consumed.get() == SEGMENT_SIZE) {
+            Segment next = segmentFor(head, head.base + SEGMENT_SIZE);
+            if (!headSegment.compareAndSet(head, next)) {
+                head = headSegment.get();
+            } else {
+                head = next;
+            }
+        }
+    }
+
+    private static void advance(AtomicReference<Segment> pointer, Segment segment) {
+        Segment current = pointer.get();
+        while (current.base < segment.base && !pointer.compareAndSet(current, segment)) {
+            current = pointer.get();
+        }
+    }
+
+    /**
+     * 等待可用的容量
+     *
+     * @param nanos 等待时间，小于0表示一直等待
+     * @return 是否预占成功
+     */
+    private boolean awaitReserve(long nanos) throws InterruptedException {
+        waitLock.lockInterruptibly();
+        fullWaiters.incrementAndGet();
+        try {
+            boolean timed = nanos >= 0;
+            while (!reserve()) {
+                if (!timed) {
+                    notFull.await();
+                } else if (nanos <= 0) {
+                    return false;
+                } else {
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            }
+            return true;
+        } finally {
+            fullWaiters.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * 等待可用的元素
+     *
+     * @param nanos 等待时间，小于0表示一直等待
+     * @return 是否领取成功
+     */
+    private boolean awaitAcquire(long nanos) throws InterruptedException {
+        waitLock.lockInterruptibly();
+        emptyWaiters.incrementAndGet();
+        try {
+            boolean timed = nanos >= 0;
+            while (!acquire()) {
+                if (!timed) {
+                    notEmpty.await();
+                } else if (nanos <= 0) {
+                    return false;
+                } else {
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+            }
+            return true;
+        } finally {
+            emptyWaiters.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * 有等待者时才加锁唤醒，等待者先登记再检查条件，不会错过唤醒
+     */
+    private void signal(Condition condition, AtomicInteger waiters, boolean all) {
+        if (waiters.get() == 0) {
+            return;
+        }
+        waitLock.lock();
+        try {
+            if (all) {
+                condition.signalAll();
+            } else {
+                condition.signal();
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    private static void checkNotNull(Object e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        private final AtomicInteger consumed = new AtomicInteger();
+        private final AtomicReference<Segment> next = new AtomicReference<>();
+
+        private Segment(long base) {
+            this.base = base;
+        }
+    }
+
+    /**
+     * 快照迭代器，删除时委托给队列的remove
+     */
+    private final class SnapshotIterator implements Iterator<E> {
+        private final Iterator<E> snapshot;
+        private E last;
+
+        private SnapshotIterator(Iterator<E> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return snapshot.hasNext();
+        }
+
+        @Override
+        public E next() {
+            last = snapshot.next();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            SegmentedArrayBlockingQueue.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package scheduled.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <big>丢弃拒绝策略</big>
+ * <p>直接丢弃任务并计数，然后抛出RejectedExecutionException，调用方按拒绝处理（完成结果、归还许可等），
+ * 通过submit提交的任务会被取消，不会一直等待结果；日志按次数采样打印，过载时不会因为打日志拖慢系统</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+@Slf4j
+public class ShedRejected implements RejectedExecutionHandler {
+    /**
+     * 每丢弃多少个任务打印一次日志
+     */
+    private static final long LOG_INTERVAL = 100;
+
+    private final String name;
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * @param name 线程池名称，用于日志
+     */
+    public ShedRejected(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 丢弃的任务数
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        shed.increment();
+        Runnable task = MonitoredThreadPoolExecutor.unwrap(r);
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+        long count = shed.sum();
+        if (count % LOG_INTERVAL == 1) {
+            log.warn("Pool {} is overloaded, task shed, taskId={}, total shed={}", name, TaskRunnable.taskIdOf(r), count);
+        }
+        throw new RejectedExecutionException("Task shed by pool " + name);
+    }
+}
@@ -0,0 +1,50 @@
+package scheduled.util;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * <big>转移拒绝策略</big>
+ * <p>把任务转到另一个线程池执行；另一个线程池也满时（包括两个线程池互相转移的情况）交给兜底策略，
+ * 任务不会在线程池之间来回转移</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+public class SpillRejected implements RejectedExecutionHandler {
+    /**
+     * 当前线程是否正在转移任务
+     */
+    private static final ThreadLocal<Boolean> SPILLING = new ThreadLocal<>();
+
+    private final Supplier<ThreadPoolExecutor> target;
+    private final RejectedExecutionHandler fallback;
+
+    /**
+     * @param target   接收任务的线程池
+     * @param fallback 无法转移时的兜底策略
+     */
+    public SpillRejected(Supplier<ThreadPoolExecutor> target, RejectedExecutionHandler fallback) {
+        this.target = target;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        ThreadPoolExecutor spillTo = target.get();
+        if (SPILLING.get() != null || spillTo == null || spillTo == executor || spillTo.isShutdown()) {
+            fallback.rejectedExecution(r, executor);
+            return;
+        }
+        SPILLING.set(Boolean.TRUE);
+        try {
+            spillTo.execute(MonitoredThreadPoolExecutor.unwrap(r));
+        } catch (RejectedExecutionException e) {
+            fallback.rejectedExecution(r, executor);
+        } finally {
+            SPILLING.remove();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package scheduled.util;
+
+import scheduled.config.ScheduleConfig;
+
+/**
+ * <big>任务的耗时画像</big>
+ * <p>记录任务耗时的直方图，按配置的分位数决定任务走快速线程池还是标准线程池。
+ * 样本数第一次达到routeMinSamples时按quickMaxMillis分类；之后分类带有滞后：
+ * 分位耗时超过quickMaxMillis才移出快速线程池，移出后低于quickReturnMillis才移回，
+ * 偶尔一次慢执行（例如GC停顿）不会让任务来回切换</p>
+ *
+ * @author 13684
+ * @data 2024/7/25 上午11:40
+ */
+public class TaskProfile {
+    /**
+     * 每记录多少次衰减一次
+     */
+    private static final int DECAY_INTERVAL = 256;
+
+    private final LatencyHistogram histogram = new LatencyHistogram(DECAY_INTERVAL);
+    /**
+     * 是否走快速线程池，没有历史耗时的任务默认走标准线程池
+     */
+    private volatile boolean quick;
+    /**
+     * 是否已经分类过，第一次分类不使用滞后
+     */
+    private volatile boolean classified;
+
+    /**
+     * 记录一次执行耗时并重新分类
+     *
+     * @param millis 执行耗时（毫秒）
+     * @param config 定时任务配置
+     * @return 当前的分位耗时（毫秒）
+     */
+    public long record(long millis, ScheduleConfig config) {
+        histogram.record(millis);
+        long percentile = histogram.percentile(config.getRoutePercentile());
+        if (histogram.count() >= config.getRouteMinSamples()) {
+            classify(percentile, config);
+        }
+        return percentile;
+    }
+
+    /**
+     * 用重启前保存的分位耗时初始化
+     *
+     * @param millis 分位耗时（毫秒）
+     * @param config 定时任务配置
+     */
+    public void seed(long millis, ScheduleConfig config) {
+        histogram.record(millis);
+        quick = millis <= config.getQuickMaxMillis();
+        classified = true;
+    }
+
+    public boolean isQuick() {
+        return quick;
+    }
+
+    /**
+     * 当前的分位耗时（毫秒），没有样本时返回-1
+     */
+    public long percentile(double percentile) {
+        return histogram.percentile(percentile);
+    }
+
+    /**
+     * 最近的耗时分布（毫秒）
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    private void classify(long percentile, ScheduleConfig config) {
+        if (!classified) {
+            quick = percentile <= config.getQuickMaxMillis();
+            classified = true;
+        } else if (quick && percentile > config.getQuickMaxMillis()) {
+            quick = false;
+        } else if (!quick && percentile < config.getQuickReturnMillis()) {
+            quick = true;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package scheduled.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <big>带任务id的任务</big>
+ * <p>拒绝策略通过任务id记录被丢弃或者溢出的任务。
+ * 任务已经被线程池接收、之后又被移出队列丢弃（例如队列缩容、溢出队列放回失败）时调用丢弃回调，
+ * 由提交方把任务当作被拒绝处理，避免等待结果的调用方和任务占用的资源一直得不到释放</p>
+ *
+ * @author 13684
+ * @data 2024/7/29 上午9:40
+ */
+@Slf4j
+public class TaskRunnable implements Runnable {
+    private final String taskId;
+    private final Runnable delegate;
+    private final Runnable onDropped;
+
+    public TaskRunnable(String taskId, Runnable delegate) {
+        this(taskId, delegate, null);
+    }
+
+    /**
+     * @param taskId    任务id
+     * @param delegate  任务
+     * @param onDropped 任务被接收后又被丢弃时的回调，可以为null
+     */
+    public TaskRunnable(String taskId, Runnable delegate, Runnable onDropped) {
+        this.taskId = taskId;
+        this.delegate = delegate;
+        this.onDropped = onDropped;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * 获取任务的id，不是TaskRunnable时返回null
+     *
+     * @param runnable 任务（可以是线程池包装过的任务）
+     * @return 任务id
+     */
+    public static String taskIdOf(Runnable runnable) {
+        Runnable task = MonitoredThreadPoolExecutor.unwrap(runnable);
+        return task instanceof TaskRunnable ? ((TaskRunnable) task).taskId : null;
+    }
+
+    /**
+     * 通知提交方任务被丢弃
+     *
+     * @param runnable 任务（可以是线程池包装过的任务）
+     * @return 是否有丢弃回调，没有时调用方需要自己处理该任务
+     */
+    public static boolean drop(Runnable runnable) {
+        Runnable task = MonitoredThreadPoolExecutor.unwrap(runnable);
+        if (!(task instanceof TaskRunnable) || ((TaskRunnable) task).onDropped == null) {
+            return false;
+        }
+        TaskRunnable taskRunnable = (TaskRunnable) task;
+        try {
+            taskRunnable.onDropped.run();
+        } catch (Exception e) {
+            log.error("{} task drop callback failed", taskRunnable.taskId, e);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        delegate.run();
+    }
+}
@@ -0,0 +1,289 @@
+package scheduled.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <big>虚拟线程池</big>
+ * <p>每个任务在一个新的虚拟线程中执行，并发数由信号量限制，信号量的许可数即最大线程数，
+ * 可以和普通线程池一样通过setMaximumPoolSize调整；拿不到许可的任务进入队列，
+ * 执行完任务的线程继续从队列中取任务，队列为空时释放许可后退出。
+ * 核心线程数对虚拟线程没有意义，只做记录不会创建线程。
+ * 虚拟线程需要JDK21，低版本运行时退化为按需创建的普通守护线程</p>
+ *
+ * @author 13684
+ * @data 2024/7/26 下午3:30
+ */
+@Slf4j
+public class VirtualThreadPoolExecutor extends MonitoredThreadPoolExecutor {
+    private final ThreadFactory threadFactory;
+    private final boolean virtual;
+    private final ResizableSemaphore permits;
+    /**
+     * 当前存活的线程
+     */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completedTasks = new LongAdder();
+    private final Object termination = new Object();
+    private volatile int corePoolSize;
+    private volatile int largestPoolSize;
+
+    /**
+     * @param namePrefix  线程名前缀
+     * @param concurrency 最大并发数
+     * @param workQueue   拿不到许可的任务进入的队列
+     * @param handler     队列满时的拒绝策略
+     */
+    public VirtualThreadPoolExecutor(String namePrefix, int concurrency, BlockingQueue<Runnable> workQueue,
+                                     RejectedExecutionHandler handler) {
+        this(namePrefix, concurrency, workQueue, handler, virtualThreadFactory(namePrefix));
+    }
+
+    private VirtualThreadPoolExecutor(String namePrefix, int concurrency, BlockingQueue<Runnable> workQueue,
+                                      RejectedExecutionHandler handler, ThreadFactory virtualFactory) {
+        // 父类的核心线程数为0，父类不会创建任何线程
+        super(0, concurrency, 30, TimeUnit.SECONDS, workQueue,
+                virtualFactory != null ? virtualFactory
+                        : new ThreadFactoryBuilder().setNameFormat(namePrefix + "%d").setDaemon(true).build(),
+                handler);
+        this.virtual = virtualFactory != null;
+        this.threadFactory = getThreadFactory();
+        this.permits = new ResizableSemaphore(concurrency);
+        this.corePoolSize = concurrency;
+        if (!virtual) {
+            log.warn("Virtual threads are not supported by this JVM, {} falls back to platform threads", namePrefix);
+        }
+    }
+
+    /**
+     * 是否使用虚拟线程执行
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    protected void dispatch(Runnable task) {
+        if (isShutdown()) {
+            getRejectedExecutionHandler().rejectedExecution(task, this);
+            return;
+        }
+        if (permits.tryAcquire()) {
+            start(task);
+            return;
+        }
+        if (!getQueue().offer(task)) {
+            getRejectedExecutionHandler().rejectedExecution(task, this);
+        }
+        // 入队后执行中的线程可能已经全部退出，重新取一次许可，避免任务留在队列中
+        if (permits.tryAcquire()) {
+            start(null);
+        }
+    }
+
+    @Override
+    public void setCorePoolSize(int corePoolSize) {
+        if (corePoolSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.corePoolSize = corePoolSize;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    @Override
+    public synchronized void setMaximumPoolSize(int maximumPoolSize) {
+        int delta = maximumPoolSize - getMaximumPoolSize();
+        super.setMaximumPoolSize(maximumPoolSize);
+        // 构造父类时信号量还没有创建
+        if (permits == null) {
+            return;
+        }
+        if (delta > 0) {
+            permits.release(delta);
+            // 新增的许可立即用来执行队列中的任务
+            while (!getQueue().isEmpty() && permits.tryAcquire()) {
+                start(null);
+            }
+        } else if (delta < 0) {
+            // 执行中的线程不受影响，释放许可后不再补充
+            permits.reducePermits(-delta);
+        }
+    }
+
+    @Override
+    public boolean prestartCoreThread() {
+        return false;
+    }
+
+    @Override
+    public int prestartAllCoreThreads() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threads.size();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return largestPoolSize;
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completedTasks.sum();
+    }
+
+    @Override
+    public long getTaskCount() {
+        return completedTasks.sum() + active.get() + getQueue().size();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return isShutdown() && threads.isEmpty() && getQueue().isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (termination) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(termination, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 用已经拿到的许可启动一个线程
+     *
+     * @param first 第一个执行的任务，为null时直接从队列中取
+     */
+    private void start(Runnable first) {
+        try {
+            Thread thread = threadFactory.newThread(() -> work(first));
+            threads.add(thread);
+            largestPoolSize = Math.max(largestPoolSize, threads.size());
+            thread.start();
+        } catch (Throwable e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void work(Runnable first) {
+        Runnable task = first;
+        // 是否持有许可，异常退出（例如任务抛出受检异常）时也要归还
+        boolean holding = true;
+        try {
+            while (true) {
+                if (task == null) {
+                    task = getQueue().poll();
+                }
+                if (task == null) {
+                    permits.release();
+                    holding = false;
+                    // 释放许可后队列中又有了任务，能拿回许可就继续执行
+                    if (getQueue().isEmpty() || !permits.tryAcquire()) {
+                        break;
+                    }
+                    holding = true;
+                    continue;
+                }
+                runTask(task);
+                task = null;
+            }
+        } finally {
+            if (holding) {
+                permits.release();
+            }
+            threads.remove(Thread.currentThread());
+            synchronized (termination) {
+                termination.notifyAll();
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        Thread thread = Thread.currentThread();
+        active.incrementAndGet();
+        beforeExecute(thread, task);
+        Throwable thrown = null;
+        try {
+            task.run();
+        } catch (RuntimeException | Error e) {
+            thrown = e;
+            log.error("Virtual thread task failed", e);
+        } finally {
+            afterExecute(task, thrown);
+            active.decrementAndGet();
+            completedTasks.increment();
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程工厂（Thread.ofVirtual().name(prefix, 0).factory()），不支持时返回null
+     */
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * 可以减少许可的信号量
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}